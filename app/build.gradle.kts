@@ -44,6 +44,10 @@ android {
     buildFeatures {
         buildConfig = true
     }
+    testOptions {
+        // The filters log through android.util.Log.
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -52,6 +56,16 @@ dependencies {
     compileOnly(project(mapOf("path" to ":dummy")))
     compileOnly("androidx.annotation:annotation:1.0.0")
     coreLibraryDesugaring("com.android.tools:desugar_jdk_libs:1.2.2")
+
+    testImplementation("junit:junit:4.13.2")
 }
 
 tasks.register("publish") { dependsOn("build") }
+
+// ./gradlew :app:replayLithoCapture --args="capture", see LithoReplay in the unit tests.
+tasks.register<JavaExec>("replayLithoCapture") {
+    group = "verification"
+    description = "Replays a capture of the Litho filters on the JVM."
+    mainClass.set("app.revanced.integrations.patches.ads.LithoReplay")
+    classpath = tasks.named<Test>("testDebugUnitTest").get().classpath
+}
@@ -0,0 +1,173 @@
+package app.revanced.integrations.patches.ads;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Finds any of a fixed set of byte needles in a component buffer, in a single pass.
+ */
+final class BufferMatcher {
+    /**
+     * Matcher without needles, which never finds anything.
+     */
+    static final BufferMatcher EMPTY = compile(List.of());
+
+    private final PatternAutomaton automaton;
+    /**
+     * Symbol of every unsigned byte value. Bytes not used by any needle share symbol 0.
+     */
+    private final int[] symbols;
+    /**
+     * Length of each needle, indexed by the value stored in the automaton.
+     */
+    private final int[] needleLengths;
+
+    private BufferMatcher(PatternAutomaton automaton, int[] symbols, int[] needleLengths) {
+        this.automaton = automaton;
+        this.symbols = symbols;
+        this.needleLengths = needleLengths;
+    }
+
+    static BufferMatcher compile(List<byte[]> needles) {
+        int[] symbols = new int[256];
+        int symbolCount = 1;
+        for (byte[] needle : needles) {
+            for (byte b : needle) {
+                if (symbols[b & 0xFF] == 0) symbols[b & 0xFF] = symbolCount++;
+            }
+        }
+
+        int[] needleLengths = new int[needles.size()];
+        PatternAutomaton.Builder builder = new PatternAutomaton.Builder(symbolCount);
+        for (int i = 0; i < needleLengths.length; i++) {
+            byte[] needle = needles.get(i);
+            int[] pattern = new int[needle.length];
+            for (int j = 0; j < pattern.length; j++) {
+                pattern[j] = symbols[needle[j] & 0xFF];
+            }
+            builder.add(pattern, i);
+            needleLengths[i] = needle.length;
+        }
+
+        return new BufferMatcher(builder.build(), symbols, needleLengths);
+    }
+
+    boolean isEmpty() {
+        return needleLengths.length == 0;
+    }
+
+    /**
+     * Find the first needle that starts at or after {@code fromIndex} and before {@code maxIndex}.
+     * Bytes that can only belong to matches starting at or after {@code maxIndex} are not read.
+     *
+     * @param fromIndex First index a match may start at.
+     * @param maxIndex  Index no match may start at or after. Use {@link Integer#MAX_VALUE} for no limit.
+     * @return Start index of the match that ends first, or -1 if no needle was found.
+     */
+    int indexOf(byte[] array, int fromIndex, int maxIndex) {
+        return indexOf(array, 0, array.length, fromIndex, maxIndex);
+    }
+
+    /**
+     * Same as {@link #indexOf(byte[], int, int)}, but for the remaining bytes of a buffer.
+     * Heap, direct, read-only and sliced buffers are all scanned in place, without copying.
+     * The position of the buffer is not changed.
+     *
+     * @return Index relative to the position of the buffer, or -1 if no needle was found.
+     */
+    int indexOf(ByteBuffer buffer, int fromIndex, int maxIndex) {
+        if (buffer == null || isEmpty()) return -1;
+
+        final int position = buffer.position();
+        final int length = buffer.limit() - position;
+        if (buffer.hasArray()) {
+            return indexOf(buffer.array(), buffer.arrayOffset() + position, length, fromIndex, maxIndex);
+        }
+
+        final int end = scanEnd(length, maxIndex);
+        int state = PatternAutomaton.ROOT;
+        for (int i = Math.max(fromIndex, 0); i < end; i++) {
+            state = automaton.next(state, symbols[buffer.get(position + i) & 0xFF]);
+            if (!automaton.isMatch(state)) continue;
+
+            final int start = matchStart(state, i, maxIndex);
+            if (start >= 0) return start;
+        }
+        return -1;
+    }
+
+    /**
+     * @param offset Index of the first byte to scan. Returned indices are relative to it.
+     * @param length Number of bytes to scan.
+     */
+    private int indexOf(byte[] array, int offset, int length, int fromIndex, int maxIndex) {
+        if (isEmpty()) return -1;
+
+        final int end = scanEnd(length, maxIndex);
+        int state = PatternAutomaton.ROOT;
+        for (int i = Math.max(fromIndex, 0); i < end; i++) {
+            state = automaton.next(state, symbols[array[offset + i] & 0xFF]);
+            if (!automaton.isMatch(state)) continue;
+
+            final int start = matchStart(state, i, maxIndex);
+            if (start >= 0) return start;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The index after the last byte that can be part of a match starting before maxIndex.
+     */
+    private int scanEnd(int length, int maxIndex) {
+        final long readLimit = (long) maxIndex + automaton.maxPatternLength() - 1;
+        return (int) Math.min(length, readLimit);
+    }
+
+    /**
+     * @param end Index of the last byte of the matches ending at this state.
+     * @return Start of the first match that starts before maxIndex, or -1.
+     */
+    private int matchStart(int state, int end, int maxIndex) {
+        for (int needle : automaton.values(state)) {
+            final int start = end - needleLengths[needle] + 1;
+            if (start < maxIndex) return start;
+        }
+        return -1;
+    }
+
+    /**
+     * Matches each field on its own, so a needle is never found across the end of a field,
+     * or in bytes that are not part of a string.
+     *
+     * @param fields   The string fields of the buffer. Must be {@link ProtoStrings#isValid() valid}.
+     * @param maxIndex Only needles starting before this index of the buffer are found, as with {@link #indexOf(ByteBuffer, int, int)}.
+     * @return Index of the first field that contains a needle, or -1.
+     */
+    int indexOfField(ByteBuffer buffer, ProtoStrings fields, int maxIndex) {
+        if (buffer == null || isEmpty()) return -1;
+
+        final int position = buffer.position();
+        final byte[] array = buffer.hasArray() ? buffer.array() : null;
+        final int offset = array == null ? 0 : buffer.arrayOffset() + position;
+        for (int field = 0, count = fields.count(); field < count; field++) {
+            final int start = fields.start(field);
+            // Fields are recorded in the order of the buffer.
+            if (start >= maxIndex) break;
+
+            int state = PatternAutomaton.ROOT;
+            for (int i = start, end = start + fields.length(field); i < end; i++) {
+                final int b = array != null ? array[offset + i] : buffer.get(position + i);
+                state = automaton.next(state, symbols[b & 0xFF]);
+                if (automaton.isMatch(state) && matchStart(state, i, maxIndex) >= 0) return field;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return If any needle is found in the remaining bytes of the buffer.
+     */
+    boolean matches(ByteBuffer buffer) {
+        return indexOf(buffer, 0, Integer.MAX_VALUE) >= 0;
+    }
+}
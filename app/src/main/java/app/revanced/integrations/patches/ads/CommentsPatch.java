@@ -20,7 +20,7 @@ final class CommentsPatch extends Filter {
     }
 
     @Override
-    boolean filter(String path, String _identifier) {
-        return pathRegister.contains(path);
+    boolean filter(CharSequence path, String _identifier, RuleMatches matches, LithoContext _context) {
+        return pathRegister.contains(matches);
     }
 }
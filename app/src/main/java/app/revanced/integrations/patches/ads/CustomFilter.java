@@ -0,0 +1,202 @@
+package app.revanced.integrations.patches.ads;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import app.revanced.integrations.utils.LogHelper;
+
+/**
+ * The compiled entries of the custom filter setting.
+ * <p>
+ * Entries are separated by commas, and each entry is one of:
+ * <ul>
+ *     <li>{@code /regex/}: a regular expression, found anywhere in the path.
+ *     Commas inside it do not separate entries, so {@code /ad_{1,3}/} is one entry.
+ *     Backreferences are not supported, and such an entry is rejected.</li>
+ *     <li>A glob containing {@code *} or {@code ?}, anchored to the whole path.
+ *     {@code *} matches any characters and {@code ?} a single one, so {@code *ad_*} matches "ad_" anywhere.</li>
+ *     <li>Anything else is found anywhere in the path, as before.</li>
+ * </ul>
+ * Plain entries are matched by the {@link PathMatcher}, together with all other path rules.
+ * Globs and regular expressions are combined into a single alternation, so the path is matched once for all of them.
+ * Rejected entries are logged.
+ */
+final class CustomFilter {
+    static final CustomFilter EMPTY = parse("");
+
+    private static final char SEPARATOR = ',';
+    private static final char REGEX_DELIMITER = '/';
+
+    /**
+     * The setting value this filter was compiled from.
+     */
+    final String source;
+    /**
+     * Entries matched as plain substrings.
+     */
+    final String[] substrings;
+
+    @Nullable
+    private final Pattern pattern;
+    @Nullable
+    private final ThreadLocal<Matcher> matchers;
+
+    private CustomFilter(String source, String[] substrings, @Nullable Pattern pattern) {
+        this.source = source;
+        this.substrings = substrings;
+        this.pattern = pattern;
+        this.matchers = pattern == null ? null : new ThreadLocal<>() {
+            @Override
+            protected Matcher initialValue() {
+                return pattern.matcher("");
+            }
+        };
+    }
+
+    static CustomFilter parse(String source) {
+        List<String> substrings = new ArrayList<>();
+        StringBuilder alternation = new StringBuilder();
+
+        for (String entry : split(source)) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+
+            final String expression;
+            if (isRegex(entry)) {
+                expression = entry.substring(1, entry.length() - 1);
+                try {
+                    Pattern.compile(expression);
+                } catch (PatternSyntaxException ex) {
+                    LogHelper.printException(CustomFilter.class, "Invalid custom filter: " + entry, ex);
+                    continue;
+                }
+                // The groups of all entries are numbered together in the alternation, so \1 would refer to another entry.
+                if (hasBackreference(expression)) {
+                    LogHelper.printException(CustomFilter.class, "Custom filter backreferences are not supported: " + entry);
+                    continue;
+                }
+            } else if (isGlob(entry)) {
+                expression = globToRegex(entry);
+            } else {
+                substrings.add(entry);
+                continue;
+            }
+
+            if (alternation.length() > 0) alternation.append('|');
+            alternation.append("(?:").append(expression).append(')');
+        }
+
+        final Pattern pattern = alternation.length() == 0 ? null : Pattern.compile(alternation.toString());
+        return new CustomFilter(source, substrings.toArray(new String[0]), pattern);
+    }
+
+    /**
+     * Split the entries at the commas that are not inside a regular expression.
+     * A regular expression ends at the first '/' followed by a comma or the end of the source.
+     */
+    static List<String> split(String source) {
+        List<String> entries = new ArrayList<>();
+        final int length = source.length();
+        int start = 0;
+        while (start <= length) {
+            int end = -1;
+            final int entryStart = skipWhitespace(source, start);
+            if (entryStart < length && source.charAt(entryStart) == REGEX_DELIMITER) {
+                end = findRegexEnd(source, entryStart + 1);
+            }
+            if (end < 0) {
+                end = source.indexOf(SEPARATOR, start);
+                if (end < 0) end = length;
+            }
+            entries.add(source.substring(start, end));
+            start = end + 1;
+        }
+        return entries;
+    }
+
+    /**
+     * @return Position of the separator or the end of the source after the closing delimiter, or -1 if there is none.
+     */
+    private static int findRegexEnd(String source, int from) {
+        for (int i = from; i < source.length(); i++) {
+            final char c = source.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == REGEX_DELIMITER) {
+                final int next = skipWhitespace(source, i + 1);
+                if (next == source.length() || source.charAt(next) == SEPARATOR) return next;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(String source, int from) {
+        while (from < source.length() && Character.isWhitespace(source.charAt(from))) from++;
+        return from;
+    }
+
+    /**
+     * @return If the expression refers to a group by number or name, outside of quoted text.
+     */
+    private static boolean hasBackreference(String expression) {
+        for (int i = 0; i < expression.length() - 1; i++) {
+            if (expression.charAt(i) != '\\') continue;
+
+            final char next = expression.charAt(++i);
+            if (next >= '1' && next <= '9' || next == 'k') return true;
+            if (next == 'Q') {
+                final int end = expression.indexOf("\\E", i);
+                if (end < 0) return false;
+                i = end + 1;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRegex(String entry) {
+        return entry.length() > 2
+                && entry.charAt(0) == REGEX_DELIMITER
+                && entry.charAt(entry.length() - 1) == REGEX_DELIMITER;
+    }
+
+    private static boolean isGlob(String entry) {
+        return entry.indexOf('*') >= 0 || entry.indexOf('?') >= 0;
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder("\\A");
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c != '*' && c != '?') {
+                literal.append(c);
+                continue;
+            }
+
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            regex.append(c == '*' ? ".*" : ".");
+        }
+        if (literal.length() > 0) regex.append(Pattern.quote(literal.toString()));
+        return regex.append("\\z").toString();
+    }
+
+    boolean hasPatterns() {
+        return pattern != null;
+    }
+
+    /**
+     * @return If any glob or regular expression matches the path.
+     */
+    boolean matchesPattern(CharSequence path) {
+        if (matchers == null) return false;
+        return matchers.get().reset(path).find();
+    }
+}
@@ -3,206 +3,476 @@ package app.revanced.integrations.patches.ads;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import app.revanced.integrations.returnyoutubedislike.ReturnYouTubeDislike;
 import app.revanced.integrations.settings.SettingsEnum;
 import app.revanced.integrations.patches.utils.PatchStatus;
+import app.revanced.integrations.utils.LogHelper;
 
 
 public class ExtendedLithoFilterPatch {
-    private static final List<String> excludedBlockingList = List.of(
-        "home_video_with_context",
-        "related_video_with_context",
-        "search_video_with_context"
-    );
-    private static final List<String> whiteList = List.of(
-        "library_recent_shelf"
-    );
-    private static final int excludedBlockingListSize = excludedBlockingList.size() - 1;
+    /**
+     * Segment patterns of the path contexts, matched together with the block lists of the {@link RuleSnapshot}.
+     * The position of a pattern is its bit in the result of {@link SegmentRules#match(PathSegments)}.
+     * Like the block lists, they are found anywhere in the path, not only as whole segments.
+     */
+    private static final String[] contextPatterns = {
+        "*library_recent_shelf*",
+        "*CellType|ScrollableContainerType|ContainerType|ContainerType|video_action_button*",
+        "*overflow_menu_item*",
+        "*|button*",
+        "*reel_channel_bar*",
+        "*related_video_with_context*",
+        "*search_video_with_context*",
+        "*home_video_with_context*"
+    };
+    private static final long WHITELIST = 1L;
+    private static final long VIDEO_ACTION_BUTTON = 1L << 1;
+    private static final long MENU_ITEM = 1L << 2;
+    private static final long BUTTON = 1L << 3;
+    private static final long REEL_CHANNEL_BAR = 1L << 4;
+    private static final long GENERIC_BUFFER_CONTEXT = 1L << 5 | 1L << 6;
+    private static final long FEED_VIDEO = 1L << 5 | 1L << 6 | 1L << 7;
 
-    public static boolean InflatedLithoView(String value, ByteBuffer buffer) {
-        if (value == null || value.isEmpty()) return false;
-        for (String whiteListItem : whiteList) {
-            if (value.contains(whiteListItem)) return false;
-        }
+    /**
+     * Why a component was blocked. Indices into {@link #blockReasons}, which labels them in the {@link FilterTrace}.
+     */
+    private static final int NOT_BLOCKED = 0;
+    private static final int BLOCKED_ACTION_BUTTON = 1;
+    private static final int BLOCKED_GENERIC_BUFFER = 2;
+    private static final int BLOCKED_MENU_ITEM = 3;
+    private static final int BLOCKED_BUFFER = 4;
+    private static final int BLOCKED_SUGGESTIONS = 5;
+    private static final int BLOCKED_GENERAL = 6;
+    private static final int BLOCKED_REEL_CHANNEL_BAR = 7;
+    private static final String[] blockReasons = {
+            null,
+            "action button",
+            "generic buffer",
+            "menu item",
+            "buffer block",
+            "suggestions",
+            "general block list",
+            "shorts channel bar"
+    };
 
-        List<byte[]> actionButtonsBlockList = new ArrayList<>();
-        List<byte[]> menuItemBlockList = new ArrayList<>();
-        List<byte[]> genericBufferList = new ArrayList<>();
-        List<byte[]> bufferBlockList = new ArrayList<>();
-        List<String> generalBlockList = new ArrayList<>();
-        int count = 0;
+    /**
+     * Maximum buffer index the action button and menu item needles may start at.
+     * Their icon name comes first, while short needles such as {@code _info} also occur in the titles, descriptions and URLs after it.
+     */
+    private static final int MAX_BUFFER_INDEX = 2000;
 
-        if (SettingsEnum.HIDE_SHARE_BUTTON.getBoolean()) {
-            actionButtonsBlockList.add("yt_outline_share".getBytes());
-        }
-        if (SettingsEnum.HIDE_LIVE_CHAT_BUTTON.getBoolean()) {
-            actionButtonsBlockList.add("yt_outline_message_bubble_overlap".getBytes());
-        }
-        if (SettingsEnum.HIDE_REPORT_BUTTON.getBoolean()) {
-            actionButtonsBlockList.add("yt_outline_flag".getBytes());
-        }
-        if (SettingsEnum.HIDE_CREATE_SHORT_BUTTON.getBoolean()) {
-            actionButtonsBlockList.add("yt_outline_youtube_shorts_plus".getBytes());
-        }
-        if (SettingsEnum.HIDE_THANKS_BUTTON.getBoolean()) {
-            actionButtonsBlockList.add("yt_outline_dollar_sign_heart".getBytes());
-        }
-        if (SettingsEnum.HIDE_CREATE_CLIP_BUTTON.getBoolean()) {
-            actionButtonsBlockList.add("yt_outline_scissors".getBytes());
-        }
+    /**
+     * Path of the video thumbnails, followed by the video id: {@code https://i.ytimg.com/vi/<video id>/hqdefault.jpg}
+     */
+    private static final byte[][] THUMBNAIL_PATHS = {"/vi/".getBytes(), "/vi_webp/".getBytes()};
+    private static final int VIDEO_ID_LENGTH = 11;
 
-        if (value.contains("CellType|ScrollableContainerType|ContainerType|ContainerType|video_action_button")) {
-            for (byte[] b: actionButtonsBlockList) {
-                int bufferIndex = indexOf(buffer.array(), b);
-                if (bufferIndex > 0 && bufferIndex < 2000) count++;
-            }
-        }
+    /**
+     * Settings the {@link RuleSnapshot} is built from.
+     */
+    private static final SettingsEnum[] snapshotSettings = {
+            SettingsEnum.HIDE_SHARE_BUTTON,
+            SettingsEnum.HIDE_LIVE_CHAT_BUTTON,
+            SettingsEnum.HIDE_REPORT_BUTTON,
+            SettingsEnum.HIDE_CREATE_SHORT_BUTTON,
+            SettingsEnum.HIDE_THANKS_BUTTON,
+            SettingsEnum.HIDE_CREATE_CLIP_BUTTON,
+            SettingsEnum.HIDE_MIX_PLAYLISTS,
+            SettingsEnum.HIDE_CAPTIONS_MENU,
+            SettingsEnum.HIDE_LOOP_MENU,
+            SettingsEnum.HIDE_AMBIENT_MENU,
+            SettingsEnum.HIDE_REPORT_MENU,
+            SettingsEnum.HIDE_HELP_MENU,
+            SettingsEnum.HIDE_MORE_MENU,
+            SettingsEnum.HIDE_LISTENING_CONTROLS_MENU,
+            SettingsEnum.HIDE_AUDIO_TRACK_MENU,
+            SettingsEnum.HIDE_WATCH_IN_VR_MENU,
+            SettingsEnum.HIDE_NERDS_MENU,
+            SettingsEnum.HIDE_YT_MUSIC_MENU,
+            SettingsEnum.HIDE_LIKE_BUTTON,
+            SettingsEnum.HIDE_DISLIKE_BUTTON,
+            SettingsEnum.HIDE_DOWNLOAD_BUTTON,
+            SettingsEnum.HIDE_PLAYLIST_BUTTON,
+            SettingsEnum.ADREMOVER_BROWSE_STORE_BUTTON,
+            SettingsEnum.ADREMOVER_FEED_SURVEY,
+            SettingsEnum.ADREMOVER_SUGGESTIONS,
+            SettingsEnum.HIDE_SHORTS_SHELF,
+            SettingsEnum.HIDE_SHORTS_PLAYER_THANKS_BUTTON,
+            SettingsEnum.HIDE_SHORTS_PLAYER_PLAYER_SUBSCRIPTIONS_BUTTON,
+            SettingsEnum.HIDE_SHORTS_PLAYER_PLAYER_JOIN_BUTTON
+    };
 
-        if (SettingsEnum.HIDE_MIX_PLAYLISTS.getBoolean()) {
-            genericBufferList.add("mix-watch".getBytes());
-            genericBufferList.add("&list=".getBytes());
-            genericBufferList.add("rellist".getBytes());
-        }
+    private static final AtomicReference<RuleSnapshot> ruleSnapshot = new AtomicReference<>();
 
-        if (containsAnyString(value)) {
-            for (byte[] b: genericBufferList) {
-                if (indexOf(buffer.array(), b) > 0) count++;
-            }
-        }
+    /**
+     * How often the {@link RuleSnapshot} was rebuilt. For debugging.
+     */
+    private static final AtomicInteger snapshotRebuildCount = new AtomicInteger();
 
-        if (SettingsEnum.HIDE_CAPTIONS_MENU.getBoolean()) {
-            menuItemBlockList.add("_caption".getBytes());
-            menuItemBlockList.add("_closed".getBytes());
-        }
-        if (SettingsEnum.HIDE_LOOP_MENU.getBoolean()) {
-            menuItemBlockList.add("_1_".getBytes());
+    private static final ThreadLocal<ProtoStrings> protoStrings = new ThreadLocal<>() {
+        @Override
+        protected ProtoStrings initialValue() {
+            return new ProtoStrings();
         }
-        if (SettingsEnum.HIDE_AMBIENT_MENU.getBoolean()) {
-            menuItemBlockList.add("_screen".getBytes());
-        }
-        if (SettingsEnum.HIDE_REPORT_MENU.getBoolean()) {
-            menuItemBlockList.add("_flag".getBytes());
-        }
-        if (SettingsEnum.HIDE_HELP_MENU.getBoolean()) {
-            menuItemBlockList.add("_question".getBytes());
+    };
+
+    public static boolean InflatedLithoView(String value, ByteBuffer buffer) {
+        if (value == null || value.isEmpty()) return false;
+        if (LithoCapture.isEnabled())
+            LithoCapture.record(LithoCapture.SOURCE_INFLATED_LITHO_VIEW, value, null, buffer);
+
+        final int reason;
+        if (!FilterMetrics.isEnabled()) {
+            reason = filter(value, buffer);
+        } else {
+            final long start = System.nanoTime();
+            reason = filter(value, buffer);
+            FilterMetrics.recordComponent(FilterMetrics.inflatedLithoView, start, reason != NOT_BLOCKED);
         }
-        if (SettingsEnum.HIDE_MORE_MENU.getBoolean()) {
-            menuItemBlockList.add("_info".getBytes());
+
+        final boolean blocked = reason != NOT_BLOCKED;
+        if (FilterTrace.isEnabled() && FilterTrace.isSampled(blocked)) {
+            FilterTrace.record(LithoCapture.SOURCE_INFLATED_LITHO_VIEW, value, blocked, blockReasons[reason]);
         }
-        if (SettingsEnum.HIDE_LISTENING_CONTROLS_MENU.getBoolean()) {
-            menuItemBlockList.add("_adjust".getBytes());
+        return blocked;
+    }
+
+    /**
+     * @return Why the component is blocked, or {@link #NOT_BLOCKED}.
+     */
+    private static int filter(String value, ByteBuffer buffer) {
+        final RuleSnapshot rules = getRuleSnapshot();
+        final long matched = rules.segmentRules.match(LithoContext.parse(value).getSegments());
+
+        if ((matched & WHITELIST) != 0) return NOT_BLOCKED;
+
+        // Walked on first use, and only once for all buffer rules.
+        final ProtoStrings fields = protoStrings.get();
+        fields.reset(buffer);
+
+        if (!rules.actionButtons.isEmpty() && (matched & VIDEO_ACTION_BUTTON) != 0) {
+            if (find(rules.actionButtons, buffer, fields, MAX_BUFFER_INDEX)) return BLOCKED_ACTION_BUTTON;
         }
-        if (SettingsEnum.HIDE_AUDIO_TRACK_MENU.getBoolean()) {
-            menuItemBlockList.add("_person".getBytes());
+
+        if (!rules.genericBuffer.isEmpty() && (matched & GENERIC_BUFFER_CONTEXT) != 0) {
+            if (find(rules.genericBuffer, buffer, fields, Integer.MAX_VALUE)) return BLOCKED_GENERIC_BUFFER;
         }
-        if (SettingsEnum.HIDE_WATCH_IN_VR_MENU.getBoolean()) {
-            menuItemBlockList.add("_vr".getBytes());
+
+        if (!rules.menuItems.isEmpty() && (matched & MENU_ITEM) != 0) {
+            if (find(rules.menuItems, buffer, fields, MAX_BUFFER_INDEX)) return BLOCKED_MENU_ITEM;
         }
-        if (SettingsEnum.HIDE_NERDS_MENU.getBoolean()) {
-            menuItemBlockList.add("_statistic".getBytes());
+
+        if (!rules.bufferBlock.isEmpty() && (matched & BUTTON) != 0) {
+            if (find(rules.bufferBlock, buffer, fields, Integer.MAX_VALUE)) return BLOCKED_BUFFER;
         }
-        if (SettingsEnum.HIDE_YT_MUSIC_MENU.getBoolean()) {
-            menuItemBlockList.add("_open".getBytes());
+
+        if (rules.hideSuggestions &&
+            value.contains("horizontal_video_shelf") &&
+            !value.contains("activeStateScrollSelectionController=com")
+        ) return BLOCKED_SUGGESTIONS;
+
+        if ((matched & rules.generalBlockMask) != 0) return BLOCKED_GENERAL;
+
+        if ((matched & REEL_CHANNEL_BAR) != 0 && (matched & rules.reelChannelBarBlockMask) != 0)
+            return BLOCKED_REEL_CHANNEL_BAR;
+
+        // Only videos that are shown, and only once the buffer was walked anyway.
+        if ((matched & FEED_VIDEO) != 0 && ReturnYouTubeDislike.isPrefetchEnabled()) {
+            final String videoId = findVideoId(buffer, fields);
+            if (videoId != null) ReturnYouTubeDislike.prefetchVotes(videoId);
         }
 
-        if (value.contains("overflow_menu_item")) {
-            for (byte[] b: menuItemBlockList) {
-                int bufferIndex = indexOf(buffer.array(), b);
-                if (bufferIndex > 0 && bufferIndex < 2000) count++;
+        return NOT_BLOCKED;
+    }
+
+    /**
+     * @return The id of the video the thumbnail URL of the component links to, or null if there is none.
+     */
+    private static String findVideoId(ByteBuffer buffer, ProtoStrings fields) {
+        if (!fields.isValid()) return null;
+
+        final int position = buffer.position();
+        for (int field = 0, count = fields.count(); field < count; field++) {
+            final int start = fields.start(field);
+            final int end = start + fields.length(field);
+            for (byte[] prefix : THUMBNAIL_PATHS) {
+                final int idStart = indexAfter(buffer, position, prefix, start, end);
+                if (idStart < 0 || idStart + VIDEO_ID_LENGTH >= end) continue;
+                if (buffer.get(position + idStart + VIDEO_ID_LENGTH) != '/') continue;
+
+                char[] videoId = new char[VIDEO_ID_LENGTH];
+                boolean valid = true;
+                for (int i = 0; i < VIDEO_ID_LENGTH && valid; i++) {
+                    final char c = (char) buffer.get(position + idStart + i);
+                    valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_';
+                    videoId[i] = c;
+                }
+                if (valid) return new String(videoId);
             }
         }
+        return null;
+    }
 
-        if (SettingsEnum.HIDE_LIKE_BUTTON.getBoolean()) {
-            generalBlockList.add("ContainerType|ContainerType|like_button");
+    /**
+     * @return Index after the first occurrence of {@code needle} in the range, or -1.
+     */
+    private static int indexAfter(ByteBuffer buffer, int position, byte[] needle, int from, int to) {
+        search:
+        for (int i = from, last = to - needle.length; i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (buffer.get(position + i + j) != needle[j]) continue search;
+            }
+            return i + needle.length;
         }
+        return -1;
+    }
 
-        if (SettingsEnum.HIDE_DISLIKE_BUTTON.getBoolean()) {
-            generalBlockList.add("ContainerType|ContainerType|dislike_button");
-            generalBlockList.add("ContainerType|ContainerType|segmented_like_dislike_button");
-        }
+    /**
+     * Match the needles starting before {@code maxIndex} against the string fields of the component, such as icon names and URLs.
+     * Buffers that can not be walked are scanned as raw bytes.
+     */
+    private static boolean find(BufferMatcher matcher, ByteBuffer buffer, ProtoStrings fields, int maxIndex) {
+        if (fields.isValid()) return matcher.indexOfField(buffer, fields, maxIndex) >= 0;
+        return matcher.indexOf(buffer, 1, maxIndex) >= 0;
+    }
 
-        if (SettingsEnum.HIDE_DOWNLOAD_BUTTON.getBoolean()) {
-            generalBlockList.add("download_button");
+    /**
+     * @return How often the filter rules were rebuilt because a related setting changed.
+     */
+    public static int getSnapshotRebuildCount() {
+        return snapshotRebuildCount.get();
+    }
+
+    /**
+     * Build the rules for the current settings before the first component is filtered.
+     */
+    static void warmUp() {
+        getRuleSnapshot();
+    }
+
+    /**
+     * @return The rules for the current settings.
+     * The rules are only rebuilt if a setting used by them changed.
+     */
+    private static RuleSnapshot getRuleSnapshot() {
+        final RuleSnapshot current = ruleSnapshot.get();
+        final int generation = SettingsEnum.getGeneration();
+        if (current != null && current.generation == generation) return current;
+
+        final long settingsMask = getSettingsMask();
+        final RuleSnapshot updated;
+        if (current != null && current.settingsMask == settingsMask) {
+            updated = current.withGeneration(generation);
+        } else {
+            updated = new RuleSnapshot(generation, settingsMask);
+            final int count = snapshotRebuildCount.incrementAndGet();
+            LogHelper.info(ExtendedLithoFilterPatch.class, "Rebuilt filter rules, rebuild count: " + count);
         }
+        // If another thread already published a newer snapshot, keep it.
+        ruleSnapshot.compareAndSet(current, updated);
+        return updated;
+    }
 
-        if (SettingsEnum.HIDE_PLAYLIST_BUTTON.getBoolean()) {
-            generalBlockList.add("save_to_playlist_button");
+    private static long getSettingsMask() {
+        long mask = 0;
+        for (int i = 0; i < snapshotSettings.length; i++) {
+            if (snapshotSettings[i].getBoolean()) mask |= 1L << i;
         }
+        return mask;
+    }
 
-        if (PatchStatus.GeneralAds()) {
-            if (SettingsEnum.ADREMOVER_BROWSE_STORE_BUTTON.getBoolean()) {
-                bufferBlockList.add("header_store_button".getBytes());
-                if (value.contains("|button")) {
-                    for (byte[] b: bufferBlockList) {
-                        int bufferIndex = indexOf(buffer.array(), b);
-                        if (bufferIndex > 0) count++;
-                    }
-                }
-            }
+    /**
+     * Immutable rules for one combination of settings.
+     * Everything is precompiled, so filtering a component does not allocate.
+     */
+    private static final class RuleSnapshot {
+        final int generation;
+        /**
+         * Enabled state of {@link #snapshotSettings}, as a bit mask.
+         */
+        final long settingsMask;
 
-            if (SettingsEnum.ADREMOVER_FEED_SURVEY.getBoolean() &&
-                value.contains("slimline_survey")) count++;
+        final BufferMatcher actionButtons;
+        final BufferMatcher genericBuffer;
+        final BufferMatcher menuItems;
+        final BufferMatcher bufferBlock;
 
-            if (SettingsEnum.ADREMOVER_SUGGESTIONS.getBoolean() &&
-                value.contains("horizontal_video_shelf") &&
-                !value.contains("activeStateScrollSelectionController=com")
-            ) count++;
+        final boolean hideSuggestions;
 
+        /**
+         * The {@link #contextPatterns}, followed by the segment patterns of both block lists.
+         */
+        final SegmentRules segmentRules;
+        /**
+         * Patterns blocked if found anywhere in the path.
+         */
+        final long generalBlockMask;
+        /**
+         * Patterns blocked only inside the Shorts channel bar.
+         */
+        final long reelChannelBarBlockMask;
+
+        private RuleSnapshot(int generation, RuleSnapshot rules) {
+            this.generation = generation;
+            this.settingsMask = rules.settingsMask;
+            this.actionButtons = rules.actionButtons;
+            this.genericBuffer = rules.genericBuffer;
+            this.menuItems = rules.menuItems;
+            this.bufferBlock = rules.bufferBlock;
+            this.hideSuggestions = rules.hideSuggestions;
+            this.segmentRules = rules.segmentRules;
+            this.generalBlockMask = rules.generalBlockMask;
+            this.reelChannelBarBlockMask = rules.reelChannelBarBlockMask;
         }
 
-        if (PatchStatus.ShortsComponent()) {
-            if (SettingsEnum.HIDE_SHORTS_SHELF.getBoolean()) {
-                generalBlockList.add("inline_shorts");
-                generalBlockList.add("reels_player_overlay");
-                generalBlockList.add("shorts_grid");
-                generalBlockList.add("shorts_shelf");
+        RuleSnapshot(int generation, long settingsMask) {
+            this.generation = generation;
+            this.settingsMask = settingsMask;
+
+            List<byte[]> actionButtonsBlockList = new ArrayList<>();
+            if (SettingsEnum.HIDE_SHARE_BUTTON.getBoolean()) {
+                actionButtonsBlockList.add("yt_outline_share".getBytes());
+            }
+            if (SettingsEnum.HIDE_LIVE_CHAT_BUTTON.getBoolean()) {
+                actionButtonsBlockList.add("yt_outline_message_bubble_overlap".getBytes());
+            }
+            if (SettingsEnum.HIDE_REPORT_BUTTON.getBoolean()) {
+                actionButtonsBlockList.add("yt_outline_flag".getBytes());
+            }
+            if (SettingsEnum.HIDE_CREATE_SHORT_BUTTON.getBoolean()) {
+                actionButtonsBlockList.add("yt_outline_youtube_shorts_plus".getBytes());
+            }
+            if (SettingsEnum.HIDE_THANKS_BUTTON.getBoolean()) {
+                actionButtonsBlockList.add("yt_outline_dollar_sign_heart".getBytes());
             }
+            if (SettingsEnum.HIDE_CREATE_CLIP_BUTTON.getBoolean()) {
+                actionButtonsBlockList.add("yt_outline_scissors".getBytes());
+            }
+            actionButtons = BufferMatcher.compile(actionButtonsBlockList);
 
-            if (SettingsEnum.HIDE_SHORTS_PLAYER_THANKS_BUTTON.getBoolean()) {
-                generalBlockList.add("suggested_action");
+            List<byte[]> genericBufferList = new ArrayList<>();
+            if (SettingsEnum.HIDE_MIX_PLAYLISTS.getBoolean()) {
+                genericBufferList.add("mix-watch".getBytes());
+                genericBufferList.add("&list=".getBytes());
+                genericBufferList.add("rellist".getBytes());
             }
+            genericBuffer = BufferMatcher.compile(genericBufferList);
 
-            if (SettingsEnum.HIDE_SHORTS_PLAYER_PLAYER_SUBSCRIPTIONS_BUTTON.getBoolean() &&
-                    value.contains("reel_channel_bar")
-            ) {
-                generalBlockList.add("subscribe_button");
+            List<byte[]> menuItemBlockList = new ArrayList<>();
+            if (SettingsEnum.HIDE_CAPTIONS_MENU.getBoolean()) {
+                menuItemBlockList.add("_caption".getBytes());
+                menuItemBlockList.add("_closed".getBytes());
+            }
+            if (SettingsEnum.HIDE_LOOP_MENU.getBoolean()) {
+                menuItemBlockList.add("_1_".getBytes());
+            }
+            if (SettingsEnum.HIDE_AMBIENT_MENU.getBoolean()) {
+                menuItemBlockList.add("_screen".getBytes());
+            }
+            if (SettingsEnum.HIDE_REPORT_MENU.getBoolean()) {
+                menuItemBlockList.add("_flag".getBytes());
+            }
+            if (SettingsEnum.HIDE_HELP_MENU.getBoolean()) {
+                menuItemBlockList.add("_question".getBytes());
+            }
+            if (SettingsEnum.HIDE_MORE_MENU.getBoolean()) {
+                menuItemBlockList.add("_info".getBytes());
             }
+            if (SettingsEnum.HIDE_LISTENING_CONTROLS_MENU.getBoolean()) {
+                menuItemBlockList.add("_adjust".getBytes());
+            }
+            if (SettingsEnum.HIDE_AUDIO_TRACK_MENU.getBoolean()) {
+                menuItemBlockList.add("_person".getBytes());
+            }
+            if (SettingsEnum.HIDE_WATCH_IN_VR_MENU.getBoolean()) {
+                menuItemBlockList.add("_vr".getBytes());
+            }
+            if (SettingsEnum.HIDE_NERDS_MENU.getBoolean()) {
+                menuItemBlockList.add("_statistic".getBytes());
+            }
+            if (SettingsEnum.HIDE_YT_MUSIC_MENU.getBoolean()) {
+                menuItemBlockList.add("_open".getBytes());
+            }
+            menuItems = BufferMatcher.compile(menuItemBlockList);
 
-            if (SettingsEnum.HIDE_SHORTS_PLAYER_PLAYER_JOIN_BUTTON.getBoolean() &&
-                    value.contains("reel_channel_bar")
-            ) {
-                generalBlockList.add("sponsor_button");
+            List<String> generalBlockList = new ArrayList<>();
+            if (SettingsEnum.HIDE_LIKE_BUTTON.getBoolean()) {
+                generalBlockList.add("*ContainerType|ContainerType|like_button*");
             }
-        }
 
-        if (count > 0) return true;
-        for (String blockItem : generalBlockList) {
-            if (value.contains(blockItem)) return true;
-        }
+            if (SettingsEnum.HIDE_DISLIKE_BUTTON.getBoolean()) {
+                generalBlockList.add("*ContainerType|ContainerType|dislike_button*");
+                generalBlockList.add("*ContainerType|ContainerType|segmented_like_dislike_button*");
+            }
 
-        return false;
-    }
+            if (SettingsEnum.HIDE_DOWNLOAD_BUTTON.getBoolean()) {
+                generalBlockList.add("*download_button*");
+            }
 
-    private static boolean containsAnyString(String value) {
-        for (int i = 1; i <= ExtendedLithoFilterPatch.excludedBlockingListSize; i++) {
-            if (value.contains(ExtendedLithoFilterPatch.excludedBlockingList.get(i))) return true;
-        }
-        return false;
-    }
+            if (SettingsEnum.HIDE_PLAYLIST_BUTTON.getBoolean()) {
+                generalBlockList.add("*save_to_playlist_button*");
+            }
+
+            List<byte[]> bufferBlockList = new ArrayList<>();
+            if (PatchStatus.GeneralAds()) {
+                if (SettingsEnum.ADREMOVER_BROWSE_STORE_BUTTON.getBoolean()) {
+                    bufferBlockList.add("header_store_button".getBytes());
+                }
+                if (SettingsEnum.ADREMOVER_FEED_SURVEY.getBoolean()) {
+                    generalBlockList.add("*slimline_survey*");
+                }
+                hideSuggestions = SettingsEnum.ADREMOVER_SUGGESTIONS.getBoolean();
+            } else {
+                hideSuggestions = false;
+            }
+            bufferBlock = BufferMatcher.compile(bufferBlockList);
 
-    public static int indexOf(byte[] array, byte[] target) {
-        if (target.length == 0) return 0;
+            List<String> reelChannelBarBlockList = new ArrayList<>();
+            if (PatchStatus.ShortsComponent()) {
+                if (SettingsEnum.HIDE_SHORTS_SHELF.getBoolean()) {
+                    generalBlockList.add("*inline_shorts*");
+                    generalBlockList.add("*reels_player_overlay*");
+                    generalBlockList.add("*shorts_grid*");
+                    generalBlockList.add("*shorts_shelf*");
+                }
 
-        for (int i = 0; i < array.length - target.length + 1; i++) {
-            boolean targetFound = true;
-            for (int j = 0; j < target.length; j++) {
-                if (array[i+j] != target[j]) {
-                    targetFound = false;
-                    break;
+                if (SettingsEnum.HIDE_SHORTS_PLAYER_THANKS_BUTTON.getBoolean()) {
+                    generalBlockList.add("*suggested_action*");
+                }
+
+                if (SettingsEnum.HIDE_SHORTS_PLAYER_PLAYER_SUBSCRIPTIONS_BUTTON.getBoolean()) {
+                    reelChannelBarBlockList.add("*subscribe_button*");
+                }
+
+                if (SettingsEnum.HIDE_SHORTS_PLAYER_PLAYER_JOIN_BUTTON.getBoolean()) {
+                    reelChannelBarBlockList.add("*sponsor_button*");
                 }
             }
-            if (targetFound) return i;
+
+            List<String> patterns = new ArrayList<>(List.of(contextPatterns));
+            generalBlockMask = maskOf(patterns.size(), generalBlockList.size());
+            patterns.addAll(generalBlockList);
+            reelChannelBarBlockMask = maskOf(patterns.size(), reelChannelBarBlockList.size());
+            patterns.addAll(reelChannelBarBlockList);
+            segmentRules = SegmentRules.compile(patterns.toArray(new String[0]));
+        }
+
+        /**
+         * @return Bit mask of {@code count} patterns, starting at pattern {@code first}.
+         */
+        private static long maskOf(int first, int count) {
+            long mask = 0;
+            for (int i = first; i < first + count; i++) {
+                mask |= 1L << i;
+            }
+            return mask;
+        }
+
+        RuleSnapshot withGeneration(int generation) {
+            return new RuleSnapshot(generation, this);
         }
-        return -1;
     }
 }
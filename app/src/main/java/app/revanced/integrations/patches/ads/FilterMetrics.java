@@ -0,0 +1,185 @@
+package app.revanced.integrations.patches.ads;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import app.revanced.integrations.settings.SettingsEnum;
+import app.revanced.integrations.utils.ReVancedUtils;
+
+/**
+ * Counters and latency histograms of the Litho filters.
+ * <p>
+ * Everything is lock-free. While {@link SettingsEnum#ADREMOVER_FILTER_METRICS} is disabled,
+ * the filters only pay for reading that setting once per component.
+ */
+public final class FilterMetrics {
+    private static final String DUMP_FILE_NAME = "revanced_filter_metrics.txt";
+
+    private static final List<LatencyHistogram> histograms = new CopyOnWriteArrayList<>();
+
+    static final LatencyHistogram lithoFilter = register("LithoFilterPatch.filter");
+    static final LatencyHistogram inflatedLithoView = register("ExtendedLithoFilterPatch.InflatedLithoView");
+
+    private static final AtomicLong seenCount = new AtomicLong();
+    private static final AtomicLong blockedCount = new AtomicLong();
+    private static final AtomicLong ignoredCount = new AtomicLong();
+
+    private static final AtomicLong prefilterSkippedCount = new AtomicLong();
+    private static final AtomicLong prefilterPassedCount = new AtomicLong();
+    private static final AtomicLong prefilterFalsePositiveCount = new AtomicLong();
+
+    /**
+     * {@link System#nanoTime()} of the cold start, or 0 if it did not happen yet.
+     * Recorded once, even while the metrics are disabled, and not cleared by {@link #reset()}.
+     */
+    private static volatile long warmUpStartNanos;
+    private static volatile long warmUpCompileNanos;
+    private static volatile long matchersReadyNanos;
+    private static volatile long firstFilterNanos;
+    private static final AtomicLong warmUpFallbackCount = new AtomicLong();
+
+    private FilterMetrics() {
+    }
+
+    static LatencyHistogram register(String name) {
+        LatencyHistogram histogram = new LatencyHistogram(name);
+        histograms.add(histogram);
+        return histogram;
+    }
+
+    static boolean isEnabled() {
+        return SettingsEnum.ADREMOVER_FILTER_METRICS.getBoolean();
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} when filtering of the component started.
+     */
+    static void recordComponent(LatencyHistogram histogram, long startNanos, boolean blocked) {
+        histogram.record(System.nanoTime() - startNanos);
+        seenCount.incrementAndGet();
+        if (blocked) blockedCount.incrementAndGet();
+    }
+
+    /**
+     * Count a component that matched a rule, but was not blocked because of an ignore list.
+     */
+    static void countIgnored() {
+        if (isEnabled()) ignoredCount.incrementAndGet();
+    }
+
+    /**
+     * Count a path the {@link TrigramFilter} proved no rule can match.
+     */
+    static void countPrefilterSkipped() {
+        prefilterSkippedCount.incrementAndGet();
+    }
+
+    /**
+     * Count a path the {@link TrigramFilter} could not skip.
+     *
+     * @param falsePositive If the path has no rule after all, also when its verdict was cached.
+     */
+    static void countPrefilterPassed(boolean falsePositive) {
+        prefilterPassedCount.incrementAndGet();
+        if (falsePositive) prefilterFalsePositiveCount.incrementAndGet();
+    }
+
+    static void recordWarmUpStarted() {
+        warmUpStartNanos = System.nanoTime();
+    }
+
+    /**
+     * @param compileStartNanos {@link System#nanoTime()} when compiling the matchers started.
+     */
+    static void recordWarmUpFinished(long compileStartNanos) {
+        final long now = System.nanoTime();
+        warmUpCompileNanos = now - compileStartNanos;
+        matchersReadyNanos = now;
+    }
+
+    /**
+     * Called for every component, but only records the first one.
+     */
+    static void recordFirstFilter() {
+        if (firstFilterNanos == 0) firstFilterNanos = System.nanoTime();
+    }
+
+    /**
+     * Count a component filtered before the matchers were ready.
+     */
+    static void countWarmUpFallback() {
+        warmUpFallbackCount.incrementAndGet();
+    }
+
+    public static void reset() {
+        seenCount.set(0);
+        blockedCount.set(0);
+        ignoredCount.set(0);
+        prefilterSkippedCount.set(0);
+        prefilterPassedCount.set(0);
+        prefilterFalsePositiveCount.set(0);
+        for (var histogram : histograms) histogram.reset();
+        for (var rule : LithoFilterPatch.getAllRules()) rule.resetMatchCount();
+    }
+
+    public static String report() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "Components: seen %d, blocked %d, ignored %d%n",
+                seenCount.get(), blockedCount.get(), ignoredCount.get()));
+        builder.append(String.format(Locale.US, "Verdict cache: hits %d, misses %d%n",
+                LithoFilterPatch.getVerdictCacheHitCount(), LithoFilterPatch.getVerdictCacheMissCount()));
+        final long passed = prefilterPassedCount.get();
+        final long falsePositives = prefilterFalsePositiveCount.get();
+        final long skipped = prefilterSkippedCount.get();
+        builder.append(String.format(Locale.US, "Prefilter: skipped %d, passed %d, false positive rate %.1f%%%n",
+                skipped, passed, skipped + falsePositives == 0 ? 0 : 100.0 * falsePositives / (skipped + falsePositives)));
+        builder.append(String.format(Locale.US, "Rule snapshot rebuilds: %d%n",
+                ExtendedLithoFilterPatch.getSnapshotRebuildCount()));
+        builder.append("Rule pack: ").append(RulePackLoader.getStatus()).append('\n');
+        appendColdStart(builder);
+
+        builder.append("\nLatency\n");
+        for (var histogram : histograms) histogram.appendTo(builder);
+
+        List<BlockRule> rules = new ArrayList<>(LithoFilterPatch.getAllRules());
+        Collections.sort(rules, (a, b) -> Long.compare(b.getMatchCount(), a.getMatchCount()));
+        builder.append("\nRule matches\n");
+        for (var rule : rules) {
+            builder.append(rule.getName()).append(": ").append(rule.getMatchCount()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static void appendColdStart(StringBuilder builder) {
+        final long start = warmUpStartNanos;
+        final long ready = matchersReadyNanos;
+        final long first = firstFilterNanos;
+        builder.append("Cold start: ");
+        if (start == 0) {
+            builder.append("matchers not warmed up\n");
+            return;
+        }
+        builder.append(first == 0 ? "no component filtered yet" : String.format(Locale.US,
+                "first filter %.1f ms after warm-up started", (first - start) / 1e6));
+        builder.append(ready == 0 ? ", matchers not ready yet" : String.format(Locale.US,
+                ", matchers ready after %.1f ms (compiled in %.1f ms)", (ready - start) / 1e6, warmUpCompileNanos / 1e6));
+        builder.append(String.format(Locale.US, ", %d components filtered before ready%n", warmUpFallbackCount.get()));
+    }
+
+    /**
+     * Write the {@link #report()} to the app specific storage.
+     *
+     * @return The written file.
+     */
+    public static File dump(Context context) throws IOException {
+        return ReVancedUtils.writeAppSpecificFile(context, DUMP_FILE_NAME, report());
+    }
+}
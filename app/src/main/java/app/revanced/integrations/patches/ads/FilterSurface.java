@@ -0,0 +1,82 @@
+package app.revanced.integrations.patches.ads;
+
+import java.util.concurrent.TimeUnit;
+
+import app.revanced.integrations.shared.PlayerType;
+
+/**
+ * The page a Litho component is shown on. Each surface has its own {@link PathMatcher} profile,
+ * compiled from the enabled rules that apply to it, so a component is only scanned for the rules that can occur there.
+ * The built-in rules apply everywhere, so the surface is only resolved while a {@link RulePack} restricts a rule to one.
+ * <p>
+ * The surface is known from the {@link PlayerType}, which is updated after the page it belongs to started to create its components.
+ * While the player type changes, and for {@link #SETTLE_MILLIS} after it changed, the surface is {@link #UNKNOWN}.
+ * Components created just before a change still get the surface of the previous page,
+ * so only rules whose components cannot occur on the other surfaces at all should be restricted.
+ */
+public enum FilterSurface {
+    BROWSE,
+    WATCH,
+    /**
+     * The surface is not known, for example while the player is minimized above a feed or the page changes. Every rule applies.
+     */
+    UNKNOWN;
+
+    /**
+     * Every surface a rule can be restricted to, as a bit set of {@link #mask()}.
+     */
+    static final int ALL = (1 << UNKNOWN.ordinal()) - 1;
+
+    static final long SETTLE_MILLIS = 1000;
+    private static final long SETTLE_NANOS = TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS);
+
+    /**
+     * The player type of the last component, null before the first one.
+     */
+    private static volatile PlayerType lastPlayerType;
+    private static volatile long playerTypeChangedNanos;
+    /**
+     * If the player type changed less than {@link #SETTLE_MILLIS} ago.
+     */
+    private static volatile boolean settling;
+
+    /**
+     * @return The rules with a bit of this mask apply to this surface.
+     */
+    int mask() {
+        return this == UNKNOWN ? ALL : 1 << ordinal();
+    }
+
+    /**
+     * @return The surface the components are currently created for.
+     */
+    static FilterSurface current() {
+        final PlayerType type = PlayerType.getCurrent();
+        final PlayerType last = lastPlayerType;
+        if (type != last) {
+            lastPlayerType = type;
+            if (last != null) {
+                playerTypeChangedNanos = System.nanoTime();
+                settling = true;
+            }
+        }
+        if (settling) {
+            if (System.nanoTime() - playerTypeChangedNanos < SETTLE_NANOS) return UNKNOWN;
+            settling = false;
+        }
+
+        switch (type) {
+            case NONE:
+            case HIDDEN:
+            case INLINE_MINIMAL:
+                return BROWSE;
+            case WATCH_WHILE_MAXIMIZED:
+            case WATCH_WHILE_FULLSCREEN:
+            case VIRTUAL_REALITY_FULLSCREEN:
+                return WATCH;
+            default:
+                // Minimized, sliding or picture in picture, components of both pages can be created.
+                return UNKNOWN;
+        }
+    }
+}
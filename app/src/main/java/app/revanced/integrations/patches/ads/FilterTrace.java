@@ -0,0 +1,140 @@
+package app.revanced.integrations.patches.ads;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import app.revanced.integrations.settings.SettingsEnum;
+import app.revanced.integrations.utils.ReVancedUtils;
+
+/**
+ * The most recent decisions of the Litho filters, to find out why a component was hidden.
+ * <p>
+ * While {@link SettingsEnum#ADREMOVER_FILTER_TRACE} is enabled, sampled decisions are written into a fixed size ring.
+ * Every n-th component is recorded, with n set by {@link SettingsEnum#ADREMOVER_FILTER_TRACE_SAMPLING},
+ * or every blocked component if {@link SettingsEnum#ADREMOVER_FILTER_TRACE_BLOCKED_ONLY} is enabled.
+ * <p>
+ * Recording is lock-free and does not allocate: the path hash, the first characters of the path,
+ * the deciding rule and the verdict are copied into preallocated arrays. Nothing is formatted until the trace is exported.
+ */
+public final class FilterTrace {
+    private static final String DUMP_FILE_NAME = "revanced_filter_trace.txt";
+
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_PATH_LENGTH = 160;
+
+    private static final AtomicLong componentCount = new AtomicLong();
+
+    private FilterTrace() {
+    }
+
+    /**
+     * The ring, allocated the first time a decision is recorded.
+     * <p>
+     * Each slot has a sequence number, which is -1 while the slot is written.
+     * A slot is only exported if its sequence number is the same before and after it was read,
+     * so entries overwritten during an export are skipped instead of torn.
+     */
+    private static final class Ring {
+        static final AtomicLong next = new AtomicLong();
+        static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+        static final long[] hashes = new long[CAPACITY];
+        static final byte[] sources = new byte[CAPACITY];
+        static final boolean[] verdicts = new boolean[CAPACITY];
+        static final Object[] rules = new Object[CAPACITY];
+        static final int[] pathLengths = new int[CAPACITY];
+        static final char[] paths = new char[CAPACITY * MAX_PATH_LENGTH];
+
+        static {
+            for (int i = 0; i < CAPACITY; i++) sequences.set(i, -1);
+        }
+    }
+
+    static boolean isEnabled() {
+        return SettingsEnum.ADREMOVER_FILTER_TRACE.getBoolean();
+    }
+
+    /**
+     * Call only if {@link #isEnabled()}, and only record the decision if this returns true.
+     */
+    static boolean isSampled(boolean blocked) {
+        if (SettingsEnum.ADREMOVER_FILTER_TRACE_BLOCKED_ONLY.getBoolean()) return blocked;
+
+        final int sampling = Math.max(1, SettingsEnum.ADREMOVER_FILTER_TRACE_SAMPLING.getInt());
+        return componentCount.getAndIncrement() % sampling == 0;
+    }
+
+    /**
+     * @param source A source of {@link LithoCapture}.
+     * @param rule   The rule that blocked the component: a {@link BlockRule}, a constant label, or null.
+     */
+    static void record(byte source, CharSequence path, boolean blocked, @Nullable Object rule) {
+        final long sequence = Ring.next.getAndIncrement();
+        final int slot = (int) (sequence & MASK);
+
+        Ring.sequences.set(slot, -1);
+        Ring.hashes[slot] = VerdictCache.hash(path);
+        Ring.sources[slot] = source;
+        Ring.verdicts[slot] = blocked;
+        Ring.rules[slot] = rule;
+        final int length = Math.min(path.length(), MAX_PATH_LENGTH);
+        final int offset = slot * MAX_PATH_LENGTH;
+        for (int i = 0; i < length; i++) {
+            Ring.paths[offset + i] = path.charAt(i);
+        }
+        Ring.pathLengths[slot] = length;
+        Ring.sequences.set(slot, sequence);
+    }
+
+    public static void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            Ring.sequences.set(i, -1);
+            Ring.rules[i] = null;
+        }
+    }
+
+    /**
+     * @return The recorded decisions, oldest first. One line per decision:
+     * sequence number, source, verdict, path hash, rule and the start of the path, separated by tabs.
+     */
+    public static String export() {
+        StringBuilder builder = new StringBuilder();
+        final long last = Ring.next.get();
+        for (long sequence = Math.max(0, last - CAPACITY); sequence < last; sequence++) {
+            final int slot = (int) (sequence & MASK);
+            if (Ring.sequences.get(slot) != sequence) continue;
+
+            final byte source = Ring.sources[slot];
+            final boolean blocked = Ring.verdicts[slot];
+            final long hash = Ring.hashes[slot];
+            final Object rule = Ring.rules[slot];
+            final String path = new String(Ring.paths, slot * MAX_PATH_LENGTH, Ring.pathLengths[slot]);
+            if (Ring.sequences.get(slot) != sequence) continue;
+
+            builder.append(sequence)
+                    .append('\t').append(source == LithoCapture.SOURCE_LITHO_FILTER ? "LithoFilterPatch" : "InflatedLithoView")
+                    .append('\t').append(blocked ? "blocked" : "passed")
+                    .append('\t').append(String.format(Locale.US, "%016x", hash))
+                    .append('\t').append(rule instanceof BlockRule ? ((BlockRule) rule).getName() : rule == null ? "-" : rule)
+                    .append('\t').append(path)
+                    .append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Write the {@link #export()} to the app specific storage.
+     *
+     * @return The written file.
+     */
+    public static File dump(Context context) throws IOException {
+        return ReVancedUtils.writeAppSpecificFile(context, DUMP_FILE_NAME, export());
+    }
+}
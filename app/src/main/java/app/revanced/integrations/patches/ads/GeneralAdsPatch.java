@@ -2,23 +2,24 @@ package app.revanced.integrations.patches.ads;
 
 import android.view.View;
 
+import java.util.List;
+
 import app.revanced.integrations.adremover.AdRemoverAPI;
 import app.revanced.integrations.settings.SettingsEnum;
-import app.revanced.integrations.utils.ReVancedUtils;
 
 public final class GeneralAdsPatch extends Filter {
-    private final String[] IGNORE = {
-            "comment_thread", // skip blocking anything in the comments
-            "download_",
-            "downloads_",
-            "home_video_with_context", // Don't filter anything in the home page video component.
-            "library_recent_shelf",
-            "playlist_add",
-            "related_video_with_context", // Don't filter anything in the related video component.
-            "|comment." // skip blocking anything in the comments replies
-    };
-
-    private final BlockRule custom = new CustomBlockRule(
+    private static final SegmentRules ignore = SegmentRules.compile(
+            "*comment_thread*", // skip blocking anything in the comments
+            "*download_*",
+            "*downloads_*",
+            "*home_video_with_context*", // Don't filter anything in the home page video component.
+            "*library_recent_shelf*",
+            "*playlist_add*",
+            "*related_video_with_context*", // Don't filter anything in the related video component.
+            "comment" // skip blocking anything in the comments replies
+    );
+
+    private final CustomBlockRule custom = new CustomBlockRule(
             SettingsEnum.ADREMOVER_USER_FILTER,
             SettingsEnum.ADREMOVER_CUSTOM_FILTER
     );
@@ -121,17 +122,41 @@ public final class GeneralAdsPatch extends Filter {
         );
     }
 
-    public boolean filter(final String path, final String identifier) {
+    @Override
+    void collectPathRules(final List<BlockRule> rules) {
+        rules.add(custom);
+        super.collectPathRules(rules);
+    }
+
+    @Override
+    boolean canBlockWithoutPathRule() {
+        return custom.hasPatterns();
+    }
+
+    @Override
+    boolean filterIdentifier(final String identifier, final LithoContext context) {
+        if (!identifierRegister.containsIdentifier(identifier)) return false;
+        if (ignore.match(context.getSegments()) == 0) return true;
+
+        FilterMetrics.countIgnored();
+        return false;
+    }
+
+    public boolean filter(final CharSequence path, final String identifier, final RuleMatches matches, final LithoContext context) {
         BlockResult result;
 
-        if (custom.isEnabled() && custom.check(path).isBlocked())
+        // Identifier rules were already decided by filterIdentifier.
+        // The ignore list only decides between IGNORED and DEFINED, so the path is only tokenized if a rule matched.
+        if (matches.contains(custom) || custom.matchesPattern(path))
             result = BlockResult.CUSTOM;
-        else if (ReVancedUtils.containsAny(path, IGNORE))
+        else if (!pathRegister.contains(matches))
+            result = BlockResult.UNBLOCKED;
+        else if (ignore.match(context.getSegments()) != 0)
             result = BlockResult.IGNORED;
-        else if (pathRegister.contains(path) || identifierRegister.contains(identifier))
-            result = BlockResult.DEFINED;
         else
-            result = BlockResult.UNBLOCKED;
+            result = BlockResult.DEFINED;
+
+        if (result == BlockResult.IGNORED) FilterMetrics.countIgnored();
 
         return result.filter;
     }
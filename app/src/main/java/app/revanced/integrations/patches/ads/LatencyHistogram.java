@@ -0,0 +1,89 @@
+package app.revanced.integrations.patches.ads;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, with fixed log-linear buckets.
+ * <p>
+ * Values below 16 ns get a bucket each. Above that, every power of two is split into 8 buckets,
+ * so the relative error of a reported value is at most 12.5%, from 16 ns up to about 18 minutes.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    final String name;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < LINEAR_LIMIT) return (int) Math.max(nanos, 0);
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT) return BUCKET_COUNT - 1;
+
+        final int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The highest value that falls into the bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) return bucket;
+
+        final int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        final int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+
+    long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) total += counts.get(i);
+        return total;
+    }
+
+    /**
+     * @param quantile Between 0 and 1.
+     * @return Upper bound of the bucket the quantile falls into, or 0 if nothing was recorded.
+     */
+    long valueAt(double quantile) {
+        final long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return upperBoundOf(i);
+        }
+        return upperBoundOf(BUCKET_COUNT - 1);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0);
+    }
+
+    void appendTo(StringBuilder builder) {
+        builder.append(String.format(Locale.US, "%s: count %d, p50 %d ns, p90 %d ns, p99 %d ns, max %d ns%n",
+                name, count(), valueAt(0.5), valueAt(0.9), valueAt(0.99), valueAt(1)));
+    }
+}
@@ -0,0 +1,226 @@
+package app.revanced.integrations.patches.ads;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import app.revanced.integrations.settings.SettingsEnum;
+import app.revanced.integrations.utils.LogHelper;
+import app.revanced.integrations.utils.ReVancedUtils;
+
+/**
+ * Records the components passed to the Litho filters, to replay them offline with {@code LithoReplay} in the unit tests.
+ * <p>
+ * The capture is a binary file of length-prefixed records, written to the app specific storage
+ * while {@link SettingsEnum#ADREMOVER_FILTER_CAPTURE} is enabled.
+ * Only every n-th component is recorded, with n set by {@link SettingsEnum#ADREMOVER_FILTER_CAPTURE_SAMPLING}.
+ * <p>
+ * File layout, big endian:
+ * <pre>
+ * header: int magic "RVLC", int version
+ * record: byte source, bytes path, bytes identifier, bytes buffer
+ * bytes:  int length (-1 for null), then the bytes. Strings are UTF-8.
+ * </pre>
+ */
+public final class LithoCapture {
+    static final int MAGIC = 0x52564C43; // RVLC
+    static final int VERSION = 1;
+
+    /**
+     * Source of a record: {@link LithoFilterPatch#filter(StringBuilder, String)}.
+     */
+    static final byte SOURCE_LITHO_FILTER = 1;
+    /**
+     * Source of a record: {@link ExtendedLithoFilterPatch#InflatedLithoView(String, ByteBuffer)}.
+     */
+    static final byte SOURCE_INFLATED_LITHO_VIEW = 2;
+
+    private static final String FILE_NAME = "revanced_litho_capture.bin";
+    private static final int FLUSH_INTERVAL = 256;
+
+    private static final AtomicLong componentCount = new AtomicLong();
+    private static final Object lock = new Object();
+
+    private static DataOutputStream output;
+    private static int unflushedCount;
+
+    private LithoCapture() {
+    }
+
+    static boolean isEnabled() {
+        return SettingsEnum.ADREMOVER_FILTER_CAPTURE.getBoolean();
+    }
+
+    /**
+     * Record the component, if it is sampled. Call only if {@link #isEnabled()}.
+     * The position of the buffer is not changed.
+     */
+    static void record(byte source, CharSequence path, @Nullable String identifier, @Nullable ByteBuffer buffer) {
+        final int sampling = Math.max(1, SettingsEnum.ADREMOVER_FILTER_CAPTURE_SAMPLING.getInt());
+        if (componentCount.getAndIncrement() % sampling != 0) return;
+
+        synchronized (lock) {
+            try {
+                if (output == null && !open()) return;
+
+                output.writeByte(source);
+                writeBytes(output, path.toString().getBytes(StandardCharsets.UTF_8));
+                writeBytes(output, identifier == null ? null : identifier.getBytes(StandardCharsets.UTF_8));
+                writeBuffer(output, buffer);
+
+                if (++unflushedCount >= FLUSH_INTERVAL) {
+                    output.flush();
+                    unflushedCount = 0;
+                }
+            } catch (IOException ex) {
+                LogHelper.printException(LithoCapture.class, "Failed to record component", ex);
+                closeOutput();
+            }
+        }
+    }
+
+    /**
+     * Flush and close the capture. The next recorded component starts a new capture.
+     */
+    public static void close() {
+        synchronized (lock) {
+            closeOutput();
+        }
+    }
+
+    private static boolean open() throws IOException {
+        Context context = ReVancedUtils.getContext();
+        if (context == null) return false;
+
+        File file = ReVancedUtils.getAppSpecificFile(context, FILE_NAME);
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        unflushedCount = 0;
+        LogHelper.info(LithoCapture.class, "Capturing components to " + file.getAbsolutePath());
+        return true;
+    }
+
+    private static void closeOutput() {
+        if (output == null) return;
+        try {
+            output.close();
+        } catch (IOException ex) {
+            LogHelper.printException(LithoCapture.class, "Failed to close capture", ex);
+        }
+        output = null;
+    }
+
+    private static void writeBytes(DataOutputStream stream, @Nullable byte[] bytes) throws IOException {
+        if (bytes == null) {
+            stream.writeInt(-1);
+            return;
+        }
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    private static void writeBuffer(DataOutputStream stream, @Nullable ByteBuffer buffer) throws IOException {
+        if (buffer == null) {
+            stream.writeInt(-1);
+            return;
+        }
+        final int position = buffer.position();
+        final int length = buffer.limit() - position;
+        stream.writeInt(length);
+        if (buffer.hasArray()) {
+            stream.write(buffer.array(), buffer.arrayOffset() + position, length);
+        } else {
+            for (int i = 0; i < length; i++) stream.writeByte(buffer.get(position + i));
+        }
+    }
+
+    /**
+     * A recorded component.
+     */
+    static final class Record {
+        final byte source;
+        final String path;
+        @Nullable
+        final String identifier;
+        @Nullable
+        final byte[] buffer;
+
+        Record(byte source, String path, @Nullable String identifier, @Nullable byte[] buffer) {
+            this.source = source;
+            this.path = path;
+            this.identifier = identifier;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Reads the records of a capture in order.
+     */
+    static final class Reader implements Closeable {
+        private final DataInputStream input;
+
+        Reader(File file) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != MAGIC) throw new IOException("Not a Litho capture: " + file);
+
+            final int version = input.readInt();
+            if (version != VERSION) throw new IOException("Unsupported capture version: " + version);
+        }
+
+        /**
+         * @return The next record, or null at the end of the capture.
+         */
+        @Nullable
+        Record next() throws IOException {
+            final int source = input.read();
+            if (source < 0) return null;
+
+            try {
+                final byte[] path = readBytes();
+                final byte[] identifier = readBytes();
+                final byte[] buffer = readBytes();
+                if (path == null) throw new IOException("Record without path");
+
+                return new Record(
+                        (byte) source,
+                        new String(path, StandardCharsets.UTF_8),
+                        identifier == null ? null : new String(identifier, StandardCharsets.UTF_8),
+                        buffer
+                );
+            } catch (EOFException ex) {
+                // The app was killed while writing. Everything before the partial record is valid.
+                return null;
+            }
+        }
+
+        @Nullable
+        private byte[] readBytes() throws IOException {
+            final int length = input.readInt();
+            if (length < 0) return null;
+
+            byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
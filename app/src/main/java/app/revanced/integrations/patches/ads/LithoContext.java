@@ -0,0 +1,112 @@
+package app.revanced.integrations.patches.ads;
+
+/**
+ * A Litho component path, parsed once for all hooks of the component.
+ * <p>
+ * The path is split into its interned segments on first use, and the flags below are found in the same walk.
+ * Each thread reuses a single instance, so parsing a component does not allocate.
+ * If the next hook on the same thread parses an equal path, the segments and flags are kept instead of found again.
+ * A context is only valid until the next call to {@link #parse(CharSequence)} on the same thread.
+ */
+public final class LithoContext {
+    public enum ComponentType {
+        /**
+         * The text of the segmented like and dislike button.
+         */
+        LIKE_DISLIKE_TEXT,
+        DISLIKE_BUTTON,
+        LIKE_BUTTON,
+        COMMENT,
+        REEL,
+        OTHER
+    }
+
+    public static final int FLAG_SEGMENTED_LIKE_DISLIKE_BUTTON = 1;
+    public static final int FLAG_DISLIKE_BUTTON = 1 << 1;
+    public static final int FLAG_LIKE_BUTTON = 1 << 2;
+    public static final int FLAG_TEXT = 1 << 3;
+    public static final int FLAG_COMMENT = 1 << 4;
+    public static final int FLAG_REEL = 1 << 5;
+
+    /**
+     * Segment patterns of the flags. Bit i of a match is flag 1 << i, except that both comment patterns set {@link #FLAG_COMMENT}.
+     */
+    private static final SegmentRules flagRules = SegmentRules.compile(
+            "segmented_like_dislike_button",
+            "dislike_button",
+            "like_button",
+            "TextType",
+            "comment_thread*",
+            "reel_*",
+            "comment"
+    );
+    private static final long COMMENT_REPLY_MATCH = 1L << 6;
+
+    private static final ThreadLocal<LithoContext> current = new ThreadLocal<>() {
+        @Override
+        protected LithoContext initialValue() {
+            return new LithoContext();
+        }
+    };
+
+    private final PathSegments segments = new PathSegments();
+    private CharSequence path = "";
+    private int flags = -1;
+    private FilterSurface surface;
+
+    private LithoContext() {
+    }
+
+    /**
+     * @param path The component path. Must not be modified while the context is used.
+     * @return The context of this thread, reset to the path.
+     */
+    public static LithoContext parse(CharSequence path) {
+        LithoContext context = current.get();
+        context.path = path;
+        context.surface = null;
+        if (!context.segments.reset(path)) context.flags = -1;
+        return context;
+    }
+
+    public CharSequence getPath() {
+        return path;
+    }
+
+    PathSegments getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return The surface the component is created for, read when first asked for.
+     */
+    public FilterSurface getSurface() {
+        if (surface == null) surface = FilterSurface.current();
+        return surface;
+    }
+
+    public int getFlags() {
+        if (flags < 0) {
+            final long matched = flagRules.match(segments);
+            int found = (int) (matched & (COMMENT_REPLY_MATCH - 1));
+            if ((matched & COMMENT_REPLY_MATCH) != 0) found |= FLAG_COMMENT;
+            flags = found;
+        }
+        return flags;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (getFlags() & flag) != 0;
+    }
+
+    public ComponentType getComponentType() {
+        final int flags = getFlags();
+        if ((flags & FLAG_SEGMENTED_LIKE_DISLIKE_BUTTON) != 0 && (flags & FLAG_TEXT) != 0)
+            return ComponentType.LIKE_DISLIKE_TEXT;
+        if ((flags & FLAG_DISLIKE_BUTTON) != 0) return ComponentType.DISLIKE_BUTTON;
+        if ((flags & FLAG_LIKE_BUTTON) != 0) return ComponentType.LIKE_BUTTON;
+        if ((flags & FLAG_COMMENT) != 0) return ComponentType.COMMENT;
+        if ((flags & FLAG_REEL) != 0) return ComponentType.REEL;
+        return ComponentType.OTHER;
+    }
+}
@@ -1,34 +1,41 @@
 package app.revanced.integrations.patches.ads;
 
-import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import app.revanced.integrations.settings.SettingsEnum;
 import app.revanced.integrations.utils.ReVancedUtils;
 
 class BlockRule {
-    final static class BlockResult {
-        private final boolean blocked;
+    protected final SettingsEnum setting;
+    private final String[] blocks;
 
-        public BlockResult(final boolean blocked) {
-            this.blocked = blocked;
-        }
+    /**
+     * How often this rule matched a component, while {@link FilterMetrics} are enabled.
+     * Components answered from the {@link VerdictCache} are not scanned, so they are not counted.
+     */
+    private final AtomicLong matchCount = new AtomicLong();
 
-        public boolean isBlocked() {
-            return blocked;
-        }
-    }
+    /**
+     * Position of this rule in the {@link PathMatcher}, or -1 if it is not matched against paths.
+     */
+    int index = -1;
 
-    protected final SettingsEnum setting;
-    private final String[] blocks;
+    /**
+     * The surfaces this rule applies to, as a bit set of {@link FilterSurface#mask()}.
+     */
+    private int surfaces = FilterSurface.ALL;
 
     /**
      * Initialize a new rule for components.
      *
-     * @param setting The setting which controls the blocking of this component.
+     * @param setting The setting which controls the blocking of this component, or null if the rule is always enabled.
      * @param blocks  The rules to block the component on.
      */
     public BlockRule(final SettingsEnum setting, final String... blocks) {
@@ -37,23 +44,106 @@ class BlockRule {
     }
 
     public boolean isEnabled() {
-        return setting.getBoolean();
+        return setting == null || setting.getBoolean();
+    }
+
+    String[] getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Restrict this rule to the surfaces its components can occur on.
+     * Call before the rule is registered. The rule still applies if the surface is {@link FilterSurface#UNKNOWN}.
+     */
+    BlockRule onlyOn(final FilterSurface... surfaces) {
+        int mask = 0;
+        for (var surface : surfaces) mask |= surface.mask();
+        this.surfaces = mask;
+        return this;
+    }
+
+    boolean appliesTo(final FilterSurface surface) {
+        return (surfaces & surface.mask()) != 0;
+    }
+
+    /**
+     * @return The setting and first block of this rule, to tell rules apart in {@link FilterMetrics}.
+     */
+    String getName() {
+        final String[] blocks = getBlocks();
+        final String first = blocks.length == 0 ? "" : blocks[0];
+        return (setting == null ? "always" : setting.getPath()) + " (" + first + ")";
+    }
+
+    void countMatch() {
+        matchCount.incrementAndGet();
+    }
+
+    long getMatchCount() {
+        return matchCount.get();
+    }
+
+    void resetMatchCount() {
+        matchCount.set(0);
     }
 
-    public BlockResult check(final String string) {
-        return new BlockResult(string != null && ReVancedUtils.containsAny(string, blocks));
+    /**
+     * @return If a pattern of this rule occurs in the sequence. Does not check if the rule is enabled.
+     */
+    public boolean matches(final CharSequence sequence) {
+        return sequence != null && ReVancedUtils.containsAny(sequence, getBlocks());
     }
 }
 
 final class CustomBlockRule extends BlockRule {
+    private final SettingsEnum filter;
+    private volatile CustomFilter compiled = CustomFilter.EMPTY;
+
     /**
      * Initialize a new rule for components.
      *
      * @param setting The setting which controls the blocking of the components.
-     * @param filter  The setting which contains the list of component names.
+     * @param filter  The setting which contains the list of component names, globs and regular expressions.
+     *                Changes take effect without a restart.
      */
     public CustomBlockRule(final SettingsEnum setting, final SettingsEnum filter) {
-        super(setting, filter.getString().split(","));
+        super(setting);
+        this.filter = filter;
+    }
+
+    /**
+     * @return The compiled filter. Compiled again only if the setting changed.
+     */
+    private CustomFilter getCompiled() {
+        CustomFilter current = compiled;
+        String source = filter.getString();
+        if (source == null) source = "";
+
+        if (!current.source.equals(source)) {
+            current = CustomFilter.parse(source);
+            compiled = current;
+        }
+        return current;
+    }
+
+    /**
+     * The plain entries, matched by the {@link PathMatcher}.
+     * A new array is returned after the setting changed, which makes the {@link PathMatcher} compile again.
+     */
+    @Override
+    String[] getBlocks() {
+        return getCompiled().substrings;
+    }
+
+    boolean hasPatterns() {
+        return isEnabled() && getCompiled().hasPatterns();
+    }
+
+    /**
+     * @return If the rule is enabled and a glob or regular expression matches the path.
+     */
+    boolean matchesPattern(final CharSequence path) {
+        return isEnabled() && getCompiled().matchesPattern(path);
     }
 }
 
@@ -61,50 +151,574 @@ abstract class Filter {
     final protected LithoBlockRegister pathRegister = new LithoBlockRegister();
     final protected LithoBlockRegister identifierRegister = new LithoBlockRegister();
 
-    abstract boolean filter(final String path, final String identifier);
+    /**
+     * Add the rules which are matched against the component path.
+     * These are compiled together with the rules of all other filters, so each path is scanned only once.
+     */
+    void collectPathRules(final List<BlockRule> rules) {
+        rules.addAll(Arrays.asList(pathRegister.getRules()));
+    }
+
+    /**
+     * Decide on the component identifier alone, before the path is scanned.
+     * Only called if the hook provided an identifier.
+     *
+     * @param context The parsed path, shared by all filters.
+     */
+    boolean filterIdentifier(final String identifier, final LithoContext context) {
+        return false;
+    }
+
+    /**
+     * @return If this filter may block a path, even if none of its path rules were found in it.
+     * Paths that no path rule can match are only skipped, if no filter returns true.
+     */
+    boolean canBlockWithoutPathRule() {
+        return false;
+    }
+
+    /**
+     * @param path    The component path. Only valid for the duration of the call, and must not be modified.
+     * @param matches  The path rules found in the path.
+     * @param context The parsed path, shared by all filters.
+     */
+    abstract boolean filter(final CharSequence path, final String identifier, final RuleMatches matches, final LithoContext context);
 }
 
-final class LithoBlockRegister implements Iterable<BlockRule> {
-    private final ArrayList<BlockRule> blocks = new ArrayList<>();
+/**
+ * The rules of a filter, in a flat array.
+ * <p>
+ * The enabled rules are selected once per settings generation, so lookups only visit rules that can block.
+ * Lookups return the position of the rule in {@link #getRules()}, or {@link #NOT_FOUND}, and never allocate.
+ */
+final class LithoBlockRegister {
+    static final int NOT_FOUND = -1;
+
+    private static final BlockRule[] NO_RULES = new BlockRule[0];
+
+    /**
+     * Only modified while the filters are constructed.
+     */
+    private BlockRule[] blocks = NO_RULES;
+
+    private volatile EnabledRules enabledRules;
+
+    /**
+     * The enabled rules of one settings generation.
+     */
+    private static final class EnabledRules {
+        final int generation;
+        /**
+         * Positions of the enabled rules.
+         */
+        final int[] positions;
+        /**
+         * Only built for registers that are looked up by identifier, so path patterns are never interned.
+         */
+        private volatile IdentifierIndex identifierIndex;
+
+        EnabledRules(int generation, BlockRule[] blocks) {
+            this.generation = generation;
+
+            int[] positions = new int[blocks.length];
+            int count = 0;
+            for (int i = 0; i < blocks.length; i++) {
+                if (blocks[i].isEnabled()) positions[count++] = i;
+            }
+            this.positions = Arrays.copyOf(positions, count);
+        }
+
+        IdentifierIndex getIdentifierIndex(BlockRule[] blocks) {
+            IdentifierIndex index = identifierIndex;
+            if (index == null) {
+                index = new IdentifierIndex(positions, blocks);
+                identifierIndex = index;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * The enabled rules whose patterns are all component names, by name,
+     * and the other enabled rules, which are matched as substrings of the identifier.
+     */
+    private static final class IdentifierIndex {
+        /**
+         * Position of the first enabled rule by the {@link SegmentDictionary} id of each of its component names,
+         * or {@link #NOT_FOUND}.
+         */
+        final int[] byName;
+        final int[] substringPositions;
+
+        IdentifierIndex(int[] positions, BlockRule[] blocks) {
+            int[] byName = new int[0];
+            int[] substringPositions = new int[positions.length];
+            int substringCount = 0;
+            for (int position : positions) {
+                // User input is matched as a substring, the dictionary only holds the built-in names.
+                if (blocks[position] instanceof CustomBlockRule || !areComponentNames(blocks[position].getBlocks())) {
+                    substringPositions[substringCount++] = position;
+                    continue;
+                }
+
+                for (String name : blocks[position].getBlocks()) {
+                    final int id = SegmentDictionary.intern(name);
+                    if (id >= byName.length) {
+                        final int oldLength = byName.length;
+                        byName = Arrays.copyOf(byName, id + 1);
+                        Arrays.fill(byName, oldLength, byName.length, NOT_FOUND);
+                    }
+                    if (byName[id] == NOT_FOUND) byName[id] = position;
+                }
+            }
+            this.byName = byName;
+            this.substringPositions = Arrays.copyOf(substringPositions, substringCount);
+        }
+
+        /**
+         * @return If every pattern is a whole component name, such as {@code cell_divider}.
+         */
+        private static boolean areComponentNames(String[] patterns) {
+            for (String pattern : patterns) {
+                if (pattern.isEmpty()) return false;
+                for (int i = 0; i < pattern.length(); i++) {
+                    final char c = pattern.charAt(i);
+                    if (!(c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '_')) return false;
+                }
+            }
+            return true;
+        }
+    }
 
     public void registerAll(BlockRule... blocks) {
-        this.blocks.addAll(Arrays.asList(blocks));
+        BlockRule[] all = Arrays.copyOf(this.blocks, this.blocks.length + blocks.length);
+        System.arraycopy(blocks, 0, all, this.blocks.length, blocks.length);
+        this.blocks = all;
+        enabledRules = null;
     }
 
-    @NonNull
-    @Override
-    public Iterator<BlockRule> iterator() {
-        return blocks.iterator();
+    /**
+     * @return All rules, enabled or not. Must not be modified.
+     */
+    BlockRule[] getRules() {
+        return blocks;
+    }
+
+    private EnabledRules getEnabledRules() {
+        EnabledRules enabled = enabledRules;
+        final int generation = SettingsEnum.getGeneration();
+        if (enabled == null || enabled.generation != generation) {
+            enabled = new EnabledRules(generation, blocks);
+            enabledRules = enabled;
+        }
+        return enabled;
     }
 
-    public boolean contains(String path) {
-        for (var rule : this) {
-            if (!rule.isEnabled()) continue;
+    /**
+     * @return Position of the first enabled rule with a pattern in the path, or {@link #NOT_FOUND}.
+     */
+    int indexOf(CharSequence path) {
+        if (path == null) return NOT_FOUND;
 
-            var result = rule.check(path);
-            if (result.isBlocked()) {
-                return true;
-            }
+        for (int position : getEnabledRules().positions) {
+            if (blocks[position].matches(path)) return position;
         }
+        return NOT_FOUND;
+    }
 
-        return false;
+    public boolean contains(CharSequence path) {
+        return indexOf(path) != NOT_FOUND;
+    }
+
+    /**
+     * Exact lookup of the component name of the identifier, the part before the first '.'.
+     * Rules with patterns that are not component names, for example {@code |ad_} or {@code .eml},
+     * are still matched anywhere in the identifier.
+     *
+     * @return Position of the enabled rule that blocks the identifier, or {@link #NOT_FOUND}.
+     */
+    int indexOfIdentifier(String identifier) {
+        final int position = lookupIdentifier(identifier);
+        if (position != NOT_FOUND && FilterMetrics.isEnabled()) blocks[position].countMatch();
+        return position;
+    }
+
+    /**
+     * Same as {@link #indexOfIdentifier(String)}, but the match is not counted.
+     */
+    int lookupIdentifier(String identifier) {
+        if (identifier == null) return NOT_FOUND;
+
+        final IdentifierIndex index = getEnabledRules().getIdentifierIndex(blocks);
+        int nameEnd = identifier.indexOf('.');
+        if (nameEnd < 0) nameEnd = identifier.length();
+
+        final int id = SegmentDictionary.lookup(identifier, 0, nameEnd);
+        if (id != SegmentDictionary.UNKNOWN && id < index.byName.length && index.byName[id] != NOT_FOUND)
+            return index.byName[id];
+
+        for (int position : index.substringPositions) {
+            if (blocks[position].matches(identifier)) return position;
+        }
+        return NOT_FOUND;
+    }
+
+    public boolean containsIdentifier(String identifier) {
+        return indexOfIdentifier(identifier) != NOT_FOUND;
+    }
+
+    /**
+     * @return Position of the first enabled rule found by the {@link PathMatcher}, or {@link #NOT_FOUND}.
+     */
+    int indexOf(RuleMatches matches) {
+        if (matches.isEmpty()) return NOT_FOUND;
+
+        for (int position : getEnabledRules().positions) {
+            if (matches.contains(blocks[position])) return position;
+        }
+        return NOT_FOUND;
+    }
+
+    public boolean contains(RuleMatches matches) {
+        return indexOf(matches) != NOT_FOUND;
     }
 }
 
 public final class LithoFilterPatch {
     private static final Filter[] filters = new Filter[]{
             new GeneralAdsPatch(),
-            new CommentsPatch()
+            new CommentsPatch(),
+            new RulePackFilter()
+    };
+
+    /**
+     * The path rules of all filters, indexed by {@link BlockRule#index}.
+     */
+    private static final BlockRule[] pathRules = collectPathRules();
+
+    /**
+     * Null until compiled by {@link #warmUp()}.
+     * Replaced when the settings change, or by {@link #installRulePack(RulePack)}.
+     */
+    private static final AtomicReference<PathMatcher> pathMatcher = new AtomicReference<>();
+
+    private static final AtomicBoolean warmUpStarted = new AtomicBoolean();
+
+    /**
+     * Disabled by {@code LithoReplay} in the unit tests, to benchmark the pipeline without it.
+     */
+    static volatile boolean prefilterEnabled = true;
+
+    /**
+     * {@link FilterTrace} label of a component blocked by a glob or regular expression of the custom filter,
+     * which is not a rule of its own.
+     */
+    private static final String CUSTOM_PATTERN = "custom pattern";
+
+    /**
+     * Verdicts of recently filtered paths. Replaced with an empty cache whenever the path matcher is replaced,
+     * which only happens if the rules changed.
+     */
+    private static volatile VerdictCache verdictCache;
+
+    private static final LatencyHistogram[] filterLatencies = new LatencyHistogram[filters.length];
+
+    static {
+        for (int i = 0; i < filters.length; i++) {
+            filterLatencies[i] = FilterMetrics.register(filters[i].getClass().getSimpleName());
+        }
+    }
+
+    private static final ThreadLocal<RuleMatches> ruleMatches = new ThreadLocal<>() {
+        @Override
+        protected RuleMatches initialValue() {
+            return new RuleMatches();
+        }
     };
 
+    private static BlockRule[] collectPathRules() {
+        List<BlockRule> rules = new ArrayList<>();
+        for (var filter : filters) {
+            filter.collectPathRules(rules);
+        }
+
+        List<BlockRule> indexed = new ArrayList<>(rules.size());
+        for (var rule : rules) {
+            if (rule.index >= 0) continue; // shared between filters
+            rule.index = indexed.size();
+            indexed.add(rule);
+        }
+        return indexed.toArray(new BlockRule[0]);
+    }
+
+    /**
+     * Compile the matchers on a background thread, so the first components are not delayed by it.
+     * Called when the main activity is created, and by the first filtered component if that happened first.
+     * Until the matchers are ready, components are filtered without them.
+     */
+    public static void warmUp() {
+        if (!warmUpStarted.compareAndSet(false, true)) return;
+
+        FilterMetrics.recordWarmUpStarted();
+        ReVancedUtils.runOnBackgroundThread(LithoFilterPatch::compileMatchers);
+    }
+
+    /**
+     * Compile the matchers on the calling thread. Used when replaying on the JVM,
+     * so compiling is not part of the first iteration.
+     */
+    static void warmUpNow() {
+        if (!warmUpStarted.compareAndSet(false, true)) return;
+
+        FilterMetrics.recordWarmUpStarted();
+        compileMatchers();
+    }
+
+    private static void compileMatchers() {
+        final long start = System.nanoTime();
+        // A rule pack may have been installed already, and includes the built-in rules.
+        pathMatcher.compareAndSet(null, PathMatcher.compile(pathRules, SettingsEnum.getGeneration()));
+        ExtendedLithoFilterPatch.warmUp();
+        FilterMetrics.recordWarmUpFinished(start);
+
+        RulePackLoader.reload();
+    }
+
+    /**
+     * @return The path matcher for the current settings, or null if it is not compiled yet.
+     * The automaton is only compiled again if a rule was enabled or disabled.
+     */
+    @Nullable
+    private static PathMatcher getPathMatcher() {
+        PathMatcher matcher = pathMatcher.get();
+        if (matcher == null) {
+            // Never compile on the Litho thread, the caller filters without the matcher until it is published.
+            warmUp();
+            return null;
+        }
+
+        final int generation = SettingsEnum.getGeneration();
+        while (matcher.generation != generation) {
+            final PathMatcher updated = matcher.recompileIfChanged(generation);
+            // The rules did not change, so neither did the verdicts cached for this matcher.
+            if (updated == matcher) return matcher;
+            // Fails if a rule pack was installed meanwhile, which must not be overwritten.
+            if (pathMatcher.compareAndSet(matcher, updated)) return updated;
+            matcher = pathMatcher.get();
+        }
+        return matcher;
+    }
+
+    /**
+     * Compile the built-in path rules together with the rules of the pack, and swap the result in.
+     * Called on a background thread. Until then the filters keep using the previous matcher.
+     */
+    static void installRulePack(final RulePack pack) {
+        BlockRule[] rules = Arrays.copyOf(pathRules, pathRules.length + pack.rules.length);
+        for (int i = 0; i < pack.rules.length; i++) {
+            final int index = pathRules.length + i;
+            pack.rules[i].index = index;
+            rules[index] = pack.rules[i];
+        }
+        pathMatcher.set(PathMatcher.compile(rules, SettingsEnum.getGeneration()));
+    }
+
+    /**
+     * @return The verdict cache for the path matcher, or null if caching is disabled.
+     */
+    private static VerdictCache getVerdictCache(final PathMatcher matcher) {
+        VerdictCache cache = verdictCache;
+        final int capacity = SettingsEnum.ADREMOVER_FILTER_CACHE_SIZE.getInt();
+        if (cache == null ? capacity > 0 : cache.matcher != matcher || cache.requestedCapacity != capacity) {
+            cache = capacity > 0 ? new VerdictCache(matcher, capacity) : null;
+            verdictCache = cache;
+        }
+        return cache;
+    }
+
+    private static boolean canSkipUnmatchedPaths() {
+        for (var filter : filters) {
+            if (filter.canBlockWithoutPathRule()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The path and identifier rules of all filters, and the rules of the active {@link RulePack}.
+     */
+    static List<BlockRule> getAllRules() {
+        List<BlockRule> rules = new ArrayList<>(Arrays.asList(pathRules));
+        rules.addAll(Arrays.asList(RulePackLoader.getActivePack().rules));
+        for (var filter : filters) {
+            for (var rule : filter.identifierRegister.getRules()) {
+                if (!rules.contains(rule)) rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Used by {@code LithoReplay} in the unit tests to compare the rules found by different builds.
+     *
+     * @param rules Receives the enabled path rules found in the path.
+     */
+    static void findPathRules(final CharSequence path, final List<BlockRule> rules) {
+        var matches = ruleMatches.get();
+        final PathMatcher matcher = getPathMatcher();
+        scan(path, matcher, surfaceOf(matcher, null), matches);
+        for (int index = matches.nextIndex(0); index >= 0; index = matches.nextIndex(index + 1)) {
+            rules.add(matches.get(index));
+        }
+    }
+
+    public static long getVerdictCacheHitCount() {
+        return VerdictCache.getHitCount();
+    }
+
+    public static long getVerdictCacheMissCount() {
+        return VerdictCache.getMissCount();
+    }
+
     public static boolean filter(final StringBuilder pathBuilder) {
-        var path = pathBuilder.toString();
-        if (path.isEmpty()) return false;
+        return filter(pathBuilder, null);
+    }
+
+    /**
+     * @param identifier The identifier of the component, or null if the hook does not provide it.
+     *                   Identifier rules are decided by the component name of the identifier, before the path is scanned.
+     */
+    public static boolean filter(final StringBuilder pathBuilder, final String identifier) {
+        if (pathBuilder.length() == 0) return false;
+        FilterMetrics.recordFirstFilter();
+        if (LithoCapture.isEnabled())
+            LithoCapture.record(LithoCapture.SOURCE_LITHO_FILTER, pathBuilder, identifier, null);
+
+        final boolean blocked;
+        if (!FilterMetrics.isEnabled()) {
+            blocked = filterComponent(pathBuilder, identifier, false);
+        } else {
+            final long start = System.nanoTime();
+            blocked = filterComponent(pathBuilder, identifier, true);
+            FilterMetrics.recordComponent(FilterMetrics.lithoFilter, start, blocked);
+        }
+
+        if (FilterTrace.isEnabled() && FilterTrace.isSampled(blocked)) {
+            FilterTrace.record(LithoCapture.SOURCE_LITHO_FILTER, pathBuilder, blocked,
+                    blocked ? findBlockingRule(pathBuilder, identifier) : null);
+        }
+        return blocked;
+    }
 
+    /**
+     * Find the rule a blocked component was most likely blocked by, for the {@link FilterTrace}.
+     * Only called for traced components, because the path is scanned again.
+     */
+    private static Object findBlockingRule(final CharSequence path, final String identifier) {
         for (var filter : filters) {
-            if (filter.filter(path, null)) return true;
+            final int position = filter.identifierRegister.lookupIdentifier(identifier);
+            if (position != LithoBlockRegister.NOT_FOUND) return filter.identifierRegister.getRules()[position];
         }
 
+        var matches = ruleMatches.get();
+        final PathMatcher matcher = getPathMatcher();
+        scan(path, matcher, surfaceOf(matcher, null), matches);
+        final BlockRule first = matches.first();
+        return first != null ? first : CUSTOM_PATTERN;
+    }
+
+    private static boolean filterComponent(final StringBuilder pathBuilder, final String identifier, final boolean metrics) {
+        final LithoContext context = LithoContext.parse(pathBuilder);
+
+        if (identifier != null) {
+            for (var filter : filters) {
+                if (filter.filterIdentifier(identifier, context)) return true;
+            }
+        }
+
+        final PathMatcher matcher = getPathMatcher();
+        if (matcher == null) {
+            // Still compiling. Without a matcher there is no prefilter and no verdict cache.
+            FilterMetrics.countWarmUpFallback();
+            return filter(pathBuilder, null, FilterSurface.UNKNOWN, context, metrics, false);
+        }
+
+        final FilterSurface surface = surfaceOf(matcher, context);
+        final boolean prefiltered = prefilterEnabled && canSkipUnmatchedPaths();
+        if (prefiltered && !matcher.mayMatch(pathBuilder, surface)) {
+            if (metrics) FilterMetrics.countPrefilterSkipped();
+            return false;
+        }
+
+        final VerdictCache cache = getVerdictCache(matcher);
+        long hash = 0;
+        if (cache != null) {
+            hash = matcher.isSurfaceDependent() ? VerdictCache.hash(pathBuilder, surface) : VerdictCache.hash(pathBuilder);
+            final int cached = cache.get(hash);
+            if (cached != VerdictCache.NOT_CACHED) {
+                // Counted for cached paths too, or repeated paths would only ever count as skipped.
+                if (metrics && prefiltered) FilterMetrics.countPrefilterPassed((cached & VerdictCache.UNMATCHED) != 0);
+                return (cached & VerdictCache.BLOCKED) != 0;
+            }
+        }
+
+        final boolean blocked = filter(pathBuilder, matcher, surface, context, metrics, prefiltered);
+        if (cache != null) cache.put(hash, blocked, ruleMatches.get().isEmpty());
+        return blocked;
+    }
+
+    /**
+     * Only the path rules are decided here, so the verdict does not depend on the identifier and can be cached by path.
+     * <p>
+     * Runs directly over the path builder, so the path is never copied.
+     */
+    private static boolean filter(final CharSequence path, @Nullable final PathMatcher matcher, final FilterSurface surface,
+                                  final LithoContext context, final boolean metrics, final boolean prefiltered) {
+        var matches = ruleMatches.get();
+        scan(path, matcher, surface, matches);
+        if (metrics && prefiltered) FilterMetrics.countPrefilterPassed(matches.isEmpty());
+        if (!metrics) {
+            for (var filter : filters) {
+                if (filter.filter(path, null, matches, context)) return true;
+            }
+            return false;
+        }
+
+        for (int index = matches.nextIndex(0); index >= 0; index = matches.nextIndex(index + 1)) {
+            matches.get(index).countMatch();
+        }
+        for (int i = 0; i < filters.length; i++) {
+            final long start = System.nanoTime();
+            final boolean blocked = filters[i].filter(path, null, matches, context);
+            filterLatencies[i].record(System.nanoTime() - start);
+            if (blocked) return true;
+        }
         return false;
     }
+
+    /**
+     * @param context The component, or null to read the current surface.
+     * @return The surface to scan the path for. Only resolved if a rule pack restricted a rule to a surface,
+     * and {@link FilterSurface#UNKNOWN} otherwise, which applies every rule.
+     */
+    private static FilterSurface surfaceOf(@Nullable final PathMatcher matcher, @Nullable final LithoContext context) {
+        if (matcher == null || !matcher.isSurfaceDependent()) return FilterSurface.UNKNOWN;
+        return context != null ? context.getSurface() : FilterSurface.current();
+    }
+
+    /**
+     * Scan the path with the matcher.
+     * If it is not compiled yet, every enabled built-in rule is searched for on its own instead.
+     */
+    private static void scan(final CharSequence path, @Nullable final PathMatcher matcher, final FilterSurface surface,
+                             final RuleMatches matches) {
+        if (matcher != null) {
+            matcher.scan(path, surface, matches);
+            return;
+        }
+
+        matches.reset(pathRules);
+        for (var rule : pathRules) {
+            if (rule.isEnabled() && rule.appliesTo(surface) && rule.matches(path)) matches.add(rule.index);
+        }
+    }
 }
@@ -0,0 +1,210 @@
+package app.revanced.integrations.patches.ads;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import app.revanced.integrations.settings.SettingsEnum;
+
+/**
+ * The patterns of all enabled path rules, compiled into one {@link PatternAutomaton} per {@link FilterSurface}.
+ * Each automaton only has the rules that apply to its surface. Surfaces with the same rules share an automaton,
+ * so unless a rule pack restricts rules to a surface, only one is compiled, and the surface does not need to be known.
+ * <p>
+ * The automata are never modified. Only the {@link #generation} is updated when a setting changed that no rule depends on.
+ */
+final class PathMatcher {
+    /**
+     * Characters are mapped to symbols through a lookup table for ASCII,
+     * and a binary search over the remaining pattern characters otherwise.
+     */
+    private static final int ASCII_SIZE = 128;
+
+    /**
+     * {@link SettingsEnum#getGeneration()} this matcher was compiled or last validated for.
+     */
+    volatile int generation;
+
+    /**
+     * All path rules, indexed by {@link BlockRule#index}.
+     */
+    private final BlockRule[] rules;
+    /**
+     * Which of {@link #rules} were enabled when the automaton was compiled.
+     */
+    private final boolean[] enabled;
+    /**
+     * The patterns of {@link #rules} when the automaton was compiled.
+     */
+    private final String[][] blocks;
+
+    /**
+     * Indexed by {@link FilterSurface#ordinal()}.
+     */
+    private final PatternAutomaton[] automata;
+    /**
+     * Indexed by {@link FilterSurface#ordinal()}.
+     * An element is null if a pattern of the surface is too short for it, and every path must be scanned.
+     */
+    private final TrigramFilter[] prefilters;
+    /**
+     * If the surfaces do not all share the same automaton.
+     */
+    private final boolean surfaceDependent;
+    private final int[] asciiSymbols;
+    private final char[] otherChars;
+    /**
+     * First symbol used for {@link #otherChars}.
+     */
+    private final int otherStart;
+
+    private PathMatcher(int generation, BlockRule[] rules, boolean[] enabled, String[][] blocks, PatternAutomaton[] automata,
+                        TrigramFilter[] prefilters, boolean surfaceDependent, int[] asciiSymbols, char[] otherChars, int otherStart) {
+        this.generation = generation;
+        this.rules = rules;
+        this.enabled = enabled;
+        this.blocks = blocks;
+        this.automata = automata;
+        this.prefilters = prefilters;
+        this.surfaceDependent = surfaceDependent;
+        this.asciiSymbols = asciiSymbols;
+        this.otherChars = otherChars;
+        this.otherStart = otherStart;
+    }
+
+    /**
+     * @param rules Rules to compile. The position of every rule must match its {@link BlockRule#index}.
+     */
+    static PathMatcher compile(BlockRule[] rules, int generation) {
+        boolean[] enabled = new boolean[rules.length];
+        String[][] blocks = new String[rules.length][];
+        for (int i = 0; i < rules.length; i++) {
+            enabled[i] = rules[i].isEnabled();
+            blocks[i] = rules[i].getBlocks();
+        }
+
+        // Symbol 0 is every character that is not part of any pattern.
+        int[] asciiSymbols = new int[ASCII_SIZE];
+        StringBuilder others = new StringBuilder();
+        int symbolCount = 1;
+        for (int i = 0; i < rules.length; i++) {
+            if (!enabled[i]) continue;
+            for (String block : blocks[i]) {
+                for (int j = 0; j < block.length(); j++) {
+                    char c = block.charAt(j);
+                    if (c < ASCII_SIZE) {
+                        if (asciiSymbols[c] == 0) asciiSymbols[c] = symbolCount++;
+                    } else if (others.indexOf(String.valueOf(c)) < 0) {
+                        others.append(c);
+                    }
+                }
+            }
+        }
+        char[] otherChars = others.toString().toCharArray();
+        Arrays.sort(otherChars);
+        final int alphabetSize = symbolCount + otherChars.length;
+
+        final FilterSurface[] surfaces = FilterSurface.values();
+        PatternAutomaton[] automata = new PatternAutomaton[surfaces.length];
+        TrigramFilter[] prefilters = new TrigramFilter[surfaces.length];
+        boolean surfaceDependent = false;
+        for (var surface : surfaces) {
+            final int same = findSameProfile(rules, enabled, surface);
+            if (same >= 0) {
+                automata[surface.ordinal()] = automata[same];
+                prefilters[surface.ordinal()] = prefilters[same];
+                continue;
+            }
+            if (surface.ordinal() > 0) surfaceDependent = true;
+
+            PatternAutomaton.Builder builder = new PatternAutomaton.Builder(alphabetSize);
+            List<String> patterns = new ArrayList<>();
+            for (int i = 0; i < rules.length; i++) {
+                if (!enabled[i] || !rules[i].appliesTo(surface)) continue;
+                for (String block : blocks[i]) {
+                    patterns.add(block);
+                    int[] symbols = new int[block.length()];
+                    for (int j = 0; j < symbols.length; j++) {
+                        symbols[j] = symbolOf(block.charAt(j), asciiSymbols, otherChars, symbolCount);
+                    }
+                    builder.add(symbols, i);
+                }
+            }
+            automata[surface.ordinal()] = builder.build();
+            prefilters[surface.ordinal()] = TrigramFilter.build(patterns);
+        }
+
+        return new PathMatcher(generation, rules, enabled, blocks, automata, prefilters, surfaceDependent,
+                asciiSymbols, otherChars, symbolCount);
+    }
+
+    /**
+     * @return Ordinal of an earlier surface with the same enabled rules, or -1 if there is none.
+     */
+    private static int findSameProfile(BlockRule[] rules, boolean[] enabled, FilterSurface surface) {
+        search:
+        for (int other = 0; other < surface.ordinal(); other++) {
+            final FilterSurface otherSurface = FilterSurface.values()[other];
+            for (int i = 0; i < rules.length; i++) {
+                if (enabled[i] && rules[i].appliesTo(surface) != rules[i].appliesTo(otherSurface)) continue search;
+            }
+            return other;
+        }
+        return -1;
+    }
+
+    /**
+     * Called after any setting changed.
+     * The automaton is only compiled again if a rule was enabled or disabled,
+     * or the patterns of a rule changed, since the last compilation.
+     *
+     * @return A new matcher, or this matcher if no rule changed.
+     */
+    PathMatcher recompileIfChanged(int generation) {
+        for (int i = 0; i < rules.length; i++) {
+            if (enabled[i] != rules[i].isEnabled() || blocks[i] != rules[i].getBlocks()) {
+                return compile(rules, generation);
+            }
+        }
+        this.generation = generation;
+        return this;
+    }
+
+    private static int symbolOf(char c, int[] asciiSymbols, char[] otherChars, int otherStart) {
+        if (c < ASCII_SIZE) return asciiSymbols[c];
+        int index = Arrays.binarySearch(otherChars, c);
+        return index < 0 ? 0 : otherStart + index;
+    }
+
+    /**
+     * @return If an enabled rule is restricted to a surface. Otherwise every surface matches the same rules,
+     * so the surface does not have to be resolved, and is not part of the cached verdicts.
+     */
+    boolean isSurfaceDependent() {
+        return surfaceDependent;
+    }
+
+    /**
+     * @return False if no enabled rule of the surface can match the path, so it does not need to be scanned.
+     */
+    boolean mayMatch(CharSequence path, FilterSurface surface) {
+        final TrigramFilter prefilter = prefilters[surface.ordinal()];
+        return prefilter == null || prefilter.mayMatch(path);
+    }
+
+    /**
+     * Scan the path once, and record every rule of the surface with a pattern found in it.
+     */
+    void scan(CharSequence path, FilterSurface surface, RuleMatches matches) {
+        matches.reset(rules);
+
+        final PatternAutomaton automaton = automata[surface.ordinal()];
+        int state = PatternAutomaton.ROOT;
+        for (int i = 0, length = path.length(); i < length; i++) {
+            state = automaton.next(state, symbolOf(path.charAt(i), asciiSymbols, otherChars, otherStart));
+            for (int index : automaton.values(state)) {
+                matches.add(index);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package app.revanced.integrations.patches.ads;
+
+import java.util.Arrays;
+
+/**
+ * A component path split into its pipe delimited segments.
+ * <p>
+ * A path such as {@code CellType|ContainerType|comment_thread.eml|...} is tokenized once.
+ * Every segment is reduced to its name, the part before the first '.',
+ * and the name is resolved to its {@link SegmentDictionary} id.
+ * <p>
+ * Not thread safe. Instances are reused for every path parsed on the same thread, so parsing does not allocate.
+ * After {@link #reset(CharSequence)} the path is only tokenized once a segment is first needed,
+ * unless it equals the last tokenized path, whose segments are kept.
+ */
+final class PathSegments {
+    private static final char SEPARATOR = '|';
+    private static final char NAME_END = '.';
+
+    private CharSequence path = "";
+    private int count = -1;
+    private int[] ids = new int[32];
+    private int[] starts = new int[32];
+    private int[] nameEnds = new int[32];
+
+    /**
+     * Copy of the last tokenized path, and the {@link SegmentDictionary#size()} its names were looked up with.
+     */
+    private char[] parsedPath = new char[256];
+    private int parsedLength = -1;
+    private int parsedDictionarySize;
+
+    /**
+     * Use a new path, which is tokenized on first use.
+     * The path must not be modified until the segments are no longer used.
+     *
+     * @return If the path equals the last tokenized path, so its segments were kept.
+     */
+    boolean reset(CharSequence path) {
+        this.path = path;
+        // The hooks of one component parse the same path one after another.
+        if (count >= 0 && isParsed(path) && parsedDictionarySize == SegmentDictionary.size()) return true;
+
+        count = -1;
+        return false;
+    }
+
+    private boolean isParsed(CharSequence path) {
+        final int length = path.length();
+        if (length != parsedLength) return false;
+        for (int i = 0; i < length; i++) {
+            if (parsedPath[i] != path.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    void parse(CharSequence path) {
+        reset(path);
+        parse();
+    }
+
+    private void parse() {
+        count = 0;
+
+        final int length = path.length();
+        if (parsedPath.length < length) parsedPath = new char[Math.max(length, parsedPath.length * 2)];
+        for (int i = 0; i < length; i++) {
+            parsedPath[i] = path.charAt(i);
+        }
+        parsedLength = length;
+        parsedDictionarySize = SegmentDictionary.size();
+
+        int start = 0;
+        while (start <= length) {
+            int nameEnd = -1;
+            int end = start;
+            for (; end < length; end++) {
+                final char c = path.charAt(end);
+                if (c == SEPARATOR) break;
+                if (c == NAME_END && nameEnd < 0) nameEnd = end;
+            }
+            if (nameEnd < 0) nameEnd = end;
+
+            if (end > start) add(start, nameEnd);
+            start = end + 1;
+        }
+    }
+
+    private void add(int start, int nameEnd) {
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+            starts = Arrays.copyOf(starts, count * 2);
+            nameEnds = Arrays.copyOf(nameEnds, count * 2);
+        }
+        ids[count] = SegmentDictionary.lookup(path, start, nameEnd);
+        starts[count] = start;
+        nameEnds[count] = nameEnd;
+        count++;
+    }
+
+    CharSequence getPath() {
+        return path;
+    }
+
+    int count() {
+        if (count < 0) parse();
+        return count;
+    }
+
+    /**
+     * @param index Index of the segment, less than {@link #count()}.
+     * @return The {@link SegmentDictionary} id of the name of the segment.
+     */
+    int id(int index) {
+        return ids[index];
+    }
+
+    boolean nameStartsWith(int index, String prefix) {
+        final int start = starts[index];
+        if (nameEnds[index] - start < prefix.length()) return false;
+
+        return regionMatches(start, prefix);
+    }
+
+    private boolean regionMatches(int start, String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (path.charAt(start + i) != string.charAt(i)) return false;
+        }
+        return true;
+    }
+}
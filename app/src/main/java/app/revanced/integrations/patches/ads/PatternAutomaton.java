@@ -0,0 +1,165 @@
+package app.revanced.integrations.patches.ads;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Aho-Corasick automaton over a dense integer alphabet.
+ * <p>
+ * The failure links are folded into a complete transition table at build time,
+ * so scanning costs one array read per input symbol regardless of how many patterns were added.
+ * Callers map their input (characters, bytes, path segments) to symbols in the range [0, alphabetSize).
+ */
+final class PatternAutomaton {
+    static final int ROOT = 0;
+
+    private static final int[] NO_VALUES = new int[0];
+
+    private final int alphabetSize;
+    /**
+     * Next state, indexed by {@code state * alphabetSize + symbol}.
+     */
+    private final int[] transitions;
+    /**
+     * Values of every pattern ending at a state, including patterns that are a suffix of it.
+     */
+    private final int[][] values;
+    /**
+     * Length of the longest pattern, used by callers that need to bound how far they scan.
+     */
+    private final int maxPatternLength;
+
+    private PatternAutomaton(int alphabetSize, int[] transitions, int[][] values, int maxPatternLength) {
+        this.alphabetSize = alphabetSize;
+        this.transitions = transitions;
+        this.values = values;
+        this.maxPatternLength = maxPatternLength;
+    }
+
+    int next(int state, int symbol) {
+        return transitions[state * alphabetSize + symbol];
+    }
+
+    /**
+     * @return The values of all patterns that end at this state. Never null, and must not be modified.
+     */
+    int[] values(int state) {
+        return values[state];
+    }
+
+    boolean isMatch(int state) {
+        return values[state].length != 0;
+    }
+
+    int alphabetSize() {
+        return alphabetSize;
+    }
+
+    int stateCount() {
+        return values.length;
+    }
+
+    int maxPatternLength() {
+        return maxPatternLength;
+    }
+
+    static final class Builder {
+        private final int alphabetSize;
+        private final ArrayList<int[]> children = new ArrayList<>();
+        private final ArrayList<int[]> nodeValues = new ArrayList<>();
+        private int maxPatternLength;
+
+        Builder(int alphabetSize) {
+            if (alphabetSize <= 0) throw new IllegalArgumentException("Invalid alphabet size: " + alphabetSize);
+            this.alphabetSize = alphabetSize;
+            newNode();
+        }
+
+        private int newNode() {
+            int[] next = new int[alphabetSize];
+            Arrays.fill(next, -1);
+            children.add(next);
+            nodeValues.add(NO_VALUES);
+            return children.size() - 1;
+        }
+
+        /**
+         * @param pattern Symbols of the pattern. Empty patterns are ignored.
+         * @param value   Value reported when the pattern is found.
+         */
+        Builder add(int[] pattern, int value) {
+            if (pattern.length == 0) return this;
+
+            int node = ROOT;
+            for (int symbol : pattern) {
+                int next = children.get(node)[symbol];
+                if (next < 0) {
+                    next = newNode();
+                    children.get(node)[symbol] = next;
+                }
+                node = next;
+            }
+            nodeValues.set(node, union(nodeValues.get(node), new int[]{value}));
+            maxPatternLength = Math.max(maxPatternLength, pattern.length);
+            return this;
+        }
+
+        PatternAutomaton build() {
+            final int stateCount = children.size();
+            int[] transitions = new int[stateCount * alphabetSize];
+            int[][] values = nodeValues.toArray(new int[stateCount][]);
+            int[] failure = new int[stateCount];
+
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            int[] rootChildren = children.get(ROOT);
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int child = rootChildren[symbol];
+                if (child < 0) {
+                    transitions[symbol] = ROOT;
+                } else {
+                    transitions[symbol] = child;
+                    failure[child] = ROOT;
+                    queue.add(child);
+                }
+            }
+
+            // Breadth first, so the failure state of every node is complete before the node itself.
+            while (!queue.isEmpty()) {
+                final int node = queue.poll();
+                final int fail = failure[node];
+                values[node] = union(values[node], values[fail]);
+
+                int[] nodeChildren = children.get(node);
+                for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                    int child = nodeChildren[symbol];
+                    int failNext = transitions[fail * alphabetSize + symbol];
+                    if (child < 0) {
+                        transitions[node * alphabetSize + symbol] = failNext;
+                    } else {
+                        transitions[node * alphabetSize + symbol] = child;
+                        failure[child] = failNext;
+                        queue.add(child);
+                    }
+                }
+            }
+
+            return new PatternAutomaton(alphabetSize, transitions, values, maxPatternLength);
+        }
+
+        private static int[] union(int[] a, int[] b) {
+            if (b.length == 0) return a;
+            if (a.length == 0) return b;
+
+            int[] merged = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, merged, a.length, b.length);
+            Arrays.sort(merged);
+
+            int size = 0;
+            for (int value : merged) {
+                if (size == 0 || merged[size - 1] != value) merged[size++] = value;
+            }
+            return size == merged.length ? merged : Arrays.copyOf(merged, size);
+        }
+    }
+}
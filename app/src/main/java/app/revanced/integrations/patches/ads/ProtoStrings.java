@@ -0,0 +1,201 @@
+package app.revanced.integrations.patches.ads;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The string fields of a serialized protobuf message, found by walking its wire format.
+ * <p>
+ * Only tags, lengths and string bytes are read. Nothing is decoded or copied, the fields are recorded
+ * as ranges of the buffer. A length delimited field is a string if all its bytes can be text,
+ * otherwise it is walked as a nested message. If it turns out not to be a message, for example text with a line break,
+ * the strings found in it are replaced by the whole field, so it is still searched like the raw bytes.
+ * <p>
+ * Not thread safe. Each Litho thread reuses its own instance, so walking a buffer does not allocate
+ * once the arrays have grown to fit.
+ */
+final class ProtoStrings {
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+    private static final int WIRE_FIXED32 = 5;
+
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private ByteBuffer buffer;
+    private int position;
+    private int length;
+
+    /**
+     * -1 until the buffer was walked, then the number of string fields.
+     */
+    private int count = -1;
+    private boolean valid;
+    private int[] starts = new int[32];
+    private int[] lengths = new int[32];
+
+    /**
+     * Per nesting level: end of the enclosing message, start of the nested message,
+     * and the number of strings when the level was entered.
+     */
+    private final int[] parentEnds = new int[MAX_DEPTH];
+    private final int[] nestedStarts = new int[MAX_DEPTH];
+    private final int[] parentCounts = new int[MAX_DEPTH];
+
+    /**
+     * Index after the last read varint, or -1 if the varint was malformed.
+     */
+    private int varintEnd;
+
+    /**
+     * Start over with the remaining bytes of the buffer. The buffer is walked on first use,
+     * and must not be modified until the fields are no longer used.
+     */
+    void reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer == null ? 0 : buffer.position();
+        this.length = buffer == null ? 0 : buffer.limit() - position;
+        this.count = -1;
+    }
+
+    /**
+     * @return If the buffer is a well-formed message. If not, no fields were found,
+     * and the caller should fall back to scanning the raw bytes.
+     */
+    boolean isValid() {
+        walkIfNeeded();
+        return valid;
+    }
+
+    int count() {
+        walkIfNeeded();
+        return count;
+    }
+
+    /**
+     * @return Index of the first byte of the field, relative to the position of the buffer.
+     */
+    int start(int field) {
+        return starts[field];
+    }
+
+    int length(int field) {
+        return lengths[field];
+    }
+
+    private void walkIfNeeded() {
+        if (count >= 0) return;
+        count = 0;
+        valid = buffer != null && length > 0 && walk();
+        if (!valid) count = 0;
+    }
+
+    private boolean walk() {
+        int depth = 0;
+        int end = length;
+        int i = 0;
+
+        while (true) {
+            if (i == end) {
+                if (depth == 0) return true;
+                end = parentEnds[--depth];
+                continue;
+            }
+
+            final long tag = readVarint(i, end);
+            int next = varintEnd;
+            final int wireType = (int) (tag & 7);
+            if (next >= 0 && (tag >>> 3) != 0) {
+                switch (wireType) {
+                    case WIRE_VARINT:
+                        readVarint(next, end);
+                        next = varintEnd;
+                        break;
+                    case WIRE_FIXED64:
+                        next = next + 8 <= end ? next + 8 : -1;
+                        break;
+                    case WIRE_FIXED32:
+                        next = next + 4 <= end ? next + 4 : -1;
+                        break;
+                    case WIRE_LENGTH_DELIMITED:
+                        final long fieldLength = readVarint(next, end);
+                        final int fieldStart = varintEnd;
+                        if (fieldStart < 0 || fieldLength < 0 || fieldLength > end - fieldStart) {
+                            next = -1;
+                            break;
+                        }
+                        next = fieldStart + (int) fieldLength;
+                        if (fieldLength == 0) break;
+
+                        if (isText(fieldStart, next)) {
+                            add(fieldStart, next - fieldStart);
+                        } else if (depth < MAX_DEPTH) {
+                            parentEnds[depth] = end;
+                            nestedStarts[depth] = fieldStart;
+                            parentCounts[depth] = count;
+                            depth++;
+                            end = next;
+                            next = fieldStart;
+                        }
+                        break;
+                    default:
+                        // Groups are deprecated and not used by the components.
+                        next = -1;
+                        break;
+                }
+            }
+
+            if (next >= 0) {
+                i = next;
+                continue;
+            }
+
+            // Malformed. The innermost nested message is not a message, so keep it as a single string instead.
+            if (depth == 0) return false;
+            depth--;
+            count = parentCounts[depth];
+            add(nestedStarts[depth], end - nestedStarts[depth]);
+            i = end;
+            end = parentEnds[depth];
+        }
+    }
+
+    /**
+     * @return The value, with {@link #varintEnd} set to the index after it, or to -1 if it is malformed.
+     */
+    private long readVarint(int i, int end) {
+        long value = 0;
+        for (int shift = 0, read = 0; i < end && read < MAX_VARINT_BYTES; shift += 7, read++) {
+            final int b = buffer.get(position + i++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                varintEnd = i;
+                return value;
+            }
+        }
+        varintEnd = -1;
+        return 0;
+    }
+
+    /**
+     * @return If no byte is an ASCII control character, so the bytes can be UTF-8 text.
+     */
+    private boolean isText(int from, int to) {
+        for (int i = from; i < to; i++) {
+            final int b = buffer.get(position + i);
+            if (b >= 0 && b < 0x20 || b == 0x7F) return false;
+        }
+        return true;
+    }
+
+    private void add(int start, int length) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        starts[count] = start;
+        lengths[count] = length;
+        count++;
+    }
+}
@@ -0,0 +1,69 @@
+package app.revanced.integrations.patches.ads;
+
+import androidx.annotation.Nullable;
+
+/**
+ * The rules found by a single {@link PathMatcher#scan(CharSequence, FilterSurface, RuleMatches)}.
+ * <p>
+ * Not thread safe. Each Litho thread reuses its own instance, so scanning does not allocate.
+ */
+final class RuleMatches {
+    private BlockRule[] rules = new BlockRule[0];
+    private long[] words = new long[0];
+    private int first = -1;
+
+    void reset(BlockRule[] rules) {
+        this.rules = rules;
+        final int wordCount = (rules.length + 63) >>> 6;
+        if (words.length < wordCount) {
+            words = new long[wordCount];
+        } else {
+            for (int i = 0; i < wordCount; i++) words[i] = 0;
+        }
+        first = -1;
+    }
+
+    void add(int index) {
+        words[index >>> 6] |= 1L << index;
+        if (first < 0) first = index;
+    }
+
+    boolean contains(BlockRule rule) {
+        final int index = rule.index;
+        return index >= 0 && index < rules.length && rules[index] == rule
+                && (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return The index of the first rule found at or after {@code from}, or -1.
+     */
+    int nextIndex(int from) {
+        for (int index = from; index < rules.length; index++) {
+            final long word = words[index >>> 6] >>> index;
+            if (word == 0) {
+                index |= 63; // skip to the end of the word
+                continue;
+            }
+            index += Long.numberOfTrailingZeros(word);
+            return index < rules.length ? index : -1;
+        }
+        return -1;
+    }
+
+    BlockRule get(int index) {
+        return rules[index];
+    }
+
+    boolean isEmpty() {
+        return first < 0;
+    }
+
+    /**
+     * @return The first rule found while scanning, or null if nothing matched.
+     * Use {@link BlockRule#setting} to find out which setting caused the match.
+     */
+    @Nullable
+    BlockRule first() {
+        return first < 0 ? null : rules[first];
+    }
+}
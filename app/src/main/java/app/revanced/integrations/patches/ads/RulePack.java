@@ -0,0 +1,164 @@
+package app.revanced.integrations.patches.ads;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import app.revanced.integrations.settings.ReturnType;
+import app.revanced.integrations.settings.SettingsEnum;
+
+/**
+ * Path rules loaded from a JSON file, in addition to the rules built into the filters.
+ * <pre>
+ * {
+ *   "version": 2,
+ *   "rules": [
+ *     {
+ *       "id": "promo_shelf",
+ *       "setting": "revanced_adremover_general_ads",
+ *       "patterns": ["promo_shelf", "_promo_banner"],
+ *       "context": ["home_video_with_context*"],
+ *       "exclude": ["comment_thread*"],
+ *       "surfaces": ["browse"]
+ *     }
+ *   ]
+ * }
+ * </pre>
+ * A rule blocks a component if one of its patterns is found in the path, like a built-in path rule.
+ * The setting is optional, and must be a boolean setting that enables the rule.
+ * {@code context} and {@code exclude} are optional {@link SegmentRules} patterns.
+ * At least one context pattern must match the path, and no exclude pattern may.
+ * {@code surfaces} optionally restricts the rule to {@code browse} or {@code watch} (see {@link FilterSurface}), and otherwise it applies everywhere.
+ * <p>
+ * A changed file is loaded into a new pack, which replaces the active one as a whole.
+ */
+final class RulePack {
+    static final RulePack EMPTY = new RulePack(0, new Rule[0]);
+
+    final int version;
+    final Rule[] rules;
+
+    private RulePack(int version, Rule[] rules) {
+        this.version = version;
+        this.rules = rules;
+    }
+
+    /**
+     * @throws JSONException            If the JSON is malformed or a required field is missing.
+     * @throws IllegalArgumentException If a rule is invalid.
+     */
+    static RulePack parse(String json) throws JSONException {
+        JSONObject pack = new JSONObject(json);
+        final int version = pack.getInt("version");
+        JSONArray rules = pack.getJSONArray("rules");
+
+        Set<String> ids = new HashSet<>();
+        Rule[] parsed = new Rule[rules.length()];
+        for (int i = 0; i < parsed.length; i++) {
+            parsed[i] = parseRule(rules.getJSONObject(i));
+            if (!ids.add(parsed[i].id))
+                throw new IllegalArgumentException("Duplicate rule id: " + parsed[i].id);
+        }
+        return new RulePack(version, parsed);
+    }
+
+    private static Rule parseRule(JSONObject rule) throws JSONException {
+        final String id = rule.getString("id");
+        if (id.isEmpty()) throw new IllegalArgumentException("Rule without id");
+
+        SettingsEnum setting = null;
+        final String settingPath = rule.optString("setting", "");
+        if (!settingPath.isEmpty()) {
+            setting = findSetting(settingPath);
+            if (setting == null || setting.getReturnType() != ReturnType.BOOLEAN)
+                throw new IllegalArgumentException(id + ": not a boolean setting: " + settingPath);
+        }
+
+        String[] patterns = strings(rule.getJSONArray("patterns"));
+        if (patterns.length == 0) throw new IllegalArgumentException(id + ": no patterns");
+        for (String pattern : patterns) {
+            if (pattern.isEmpty()) throw new IllegalArgumentException(id + ": empty pattern");
+        }
+
+        Rule parsed = new Rule(id, setting, patterns,
+                segmentRules(rule.optJSONArray("context")),
+                segmentRules(rule.optJSONArray("exclude")));
+
+        JSONArray surfaces = rule.optJSONArray("surfaces");
+        if (surfaces != null) parsed.onlyOn(surfaces(id, surfaces));
+        return parsed;
+    }
+
+    private static FilterSurface[] surfaces(String id, JSONArray names) throws JSONException {
+        FilterSurface[] surfaces = new FilterSurface[names.length()];
+        if (surfaces.length == 0) throw new IllegalArgumentException(id + ": no surfaces");
+        for (int i = 0; i < surfaces.length; i++) {
+            final String name = names.getString(i);
+            try {
+                surfaces[i] = FilterSurface.valueOf(name.toUpperCase(Locale.US));
+            } catch (IllegalArgumentException ex) {
+                surfaces[i] = null;
+            }
+            if (surfaces[i] == null || surfaces[i] == FilterSurface.UNKNOWN)
+                throw new IllegalArgumentException(id + ": unknown surface: " + name);
+        }
+        return surfaces;
+    }
+
+    @Nullable
+    private static SettingsEnum findSetting(String path) {
+        for (SettingsEnum setting : SettingsEnum.values()) {
+            if (setting.getPath().equals(path)) return setting;
+        }
+        return null;
+    }
+
+    private static String[] strings(JSONArray array) throws JSONException {
+        String[] strings = new String[array.length()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = array.getString(i);
+        }
+        return strings;
+    }
+
+    @Nullable
+    private static SegmentRules segmentRules(@Nullable JSONArray patterns) throws JSONException {
+        if (patterns == null || patterns.length() == 0) return null;
+        return SegmentRules.compile(strings(patterns));
+    }
+
+    static final class Rule extends BlockRule {
+        final String id;
+        /**
+         * Null if the rule applies in any context.
+         */
+        @Nullable
+        private final SegmentRules context;
+        @Nullable
+        private final SegmentRules exclude;
+
+        Rule(String id, @Nullable SettingsEnum setting, String[] patterns,
+             @Nullable SegmentRules context, @Nullable SegmentRules exclude) {
+            super(setting, patterns);
+            this.id = id;
+            this.context = context;
+            this.exclude = exclude;
+        }
+
+        @Override
+        String getName() {
+            return "pack:" + id;
+        }
+
+        boolean matchesContext(PathSegments segments) {
+            if (context != null && context.match(segments) == 0) return false;
+            return exclude == null || exclude.match(segments) == 0;
+        }
+    }
+}
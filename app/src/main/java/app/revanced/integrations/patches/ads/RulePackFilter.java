@@ -0,0 +1,18 @@
+package app.revanced.integrations.patches.ads;
+
+/**
+ * Blocks the components matched by the rules of the {@link RulePack}.
+ * Those rules are compiled into the {@link PathMatcher} by {@link LithoFilterPatch#installRulePack(RulePack)},
+ * so this filter has no registers of its own, and only checks the context of the rules that were found.
+ */
+final class RulePackFilter extends Filter {
+    @Override
+    boolean filter(CharSequence path, String _identifier, RuleMatches matches, LithoContext context) {
+        for (int index = matches.nextIndex(0); index >= 0; index = matches.nextIndex(index + 1)) {
+            final BlockRule rule = matches.get(index);
+            if (rule instanceof RulePack.Rule && ((RulePack.Rule) rule).matchesContext(context.getSegments()))
+                return true;
+        }
+        return false;
+    }
+}
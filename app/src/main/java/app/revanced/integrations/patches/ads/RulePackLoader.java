@@ -0,0 +1,123 @@
+package app.revanced.integrations.patches.ads;
+
+import android.content.Context;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import app.revanced.integrations.utils.LogHelper;
+import app.revanced.integrations.utils.ReVancedUtils;
+
+/**
+ * Loads the {@link RulePack} from the app specific storage, and installs it into the {@link LithoFilterPatch}.
+ * <p>
+ * Parsing and compiling run on a background thread. The filters keep using the previous matcher,
+ * until the new one is swapped in atomically. If the pack can not be loaded, the previous pack stays active.
+ */
+public final class RulePackLoader {
+    private static final String FILE_NAME = "revanced_litho_rules.json";
+
+    private static final AtomicBoolean loading = new AtomicBoolean();
+
+    private static volatile RulePack activePack = RulePack.EMPTY;
+    private static volatile String status = "No rule pack loaded";
+
+    /**
+     * The file the active pack was loaded from, to skip reloading it if it did not change.
+     * Only accessed by the loading thread.
+     */
+    private static long loadedModified = -1;
+    private static long loadedLength = -1;
+
+    private RulePackLoader() {
+    }
+
+    /**
+     * Load the rule pack again, if its file changed. Returns immediately.
+     * Does nothing if the pack is already being loaded, or the context is not set yet.
+     */
+    public static void reload() {
+        final Context context = ReVancedUtils.getContext();
+        if (context == null || !loading.compareAndSet(false, true)) return;
+
+        ReVancedUtils.runOnBackgroundThread(() -> {
+            try {
+                load(context);
+            } finally {
+                loading.set(false);
+            }
+        });
+    }
+
+    static RulePack getActivePack() {
+        return activePack;
+    }
+
+    /**
+     * @return The version and the load and compile times of the active pack, or why the last load failed.
+     */
+    public static String getStatus() {
+        return status;
+    }
+
+    private static void load(Context context) {
+        final File file = ReVancedUtils.getAppSpecificFile(context, FILE_NAME);
+        if (!file.exists()) {
+            if (activePack != RulePack.EMPTY) install(RulePack.EMPTY);
+            loadedModified = loadedLength = -1;
+            status = "No rule pack at " + file.getAbsolutePath();
+            return;
+        }
+        if (file.lastModified() == loadedModified && file.length() == loadedLength) return;
+
+        final long start = System.nanoTime();
+        final RulePack pack;
+        try {
+            pack = RulePack.parse(read(file));
+        } catch (IOException | JSONException | RuntimeException ex) {
+            LogHelper.printException(RulePackLoader.class, "Failed to load the rule pack, keeping version " + activePack.version, ex);
+            status = "Failed to load " + file.getName() + ": " + ex.getMessage() + " (keeping version " + activePack.version + ")";
+            return;
+        }
+        final long parsed = System.nanoTime();
+
+        try {
+            install(pack);
+        } catch (RuntimeException ex) {
+            LogHelper.printException(RulePackLoader.class, "Failed to compile the rule pack, keeping version " + activePack.version, ex);
+            status = "Failed to compile " + file.getName() + ": " + ex.getMessage() + " (keeping version " + activePack.version + ")";
+            return;
+        }
+        final long compiled = System.nanoTime();
+
+        loadedModified = file.lastModified();
+        loadedLength = file.length();
+        status = String.format(Locale.US, "Version %d, %d rules, loaded in %.1f ms, compiled in %.1f ms",
+                pack.version, pack.rules.length, (parsed - start) / 1e6, (compiled - parsed) / 1e6);
+        LogHelper.info(RulePackLoader.class, "Rule pack: " + status);
+    }
+
+    private static void install(RulePack pack) {
+        LithoFilterPatch.installRulePack(pack);
+        activePack = pack;
+    }
+
+    private static String read(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package app.revanced.integrations.patches.ads;
+
+import java.util.Arrays;
+
+/**
+ * Interns the component names used by {@link SegmentRules}, and looks up names in a path without copying them.
+ * <p>
+ * Ids are stable and start at 1. Id 0 is used for every name that was never interned.
+ * The table is copy on write, so lookups from the Litho threads never lock.
+ */
+final class SegmentDictionary {
+    static final int UNKNOWN = 0;
+
+    private static final class Table {
+        final String[] names;
+        /**
+         * Open addressed hash table of ids, 0 marks an empty slot.
+         */
+        final int[] slots;
+
+        Table(String[] names) {
+            this.names = names;
+            int size = 16;
+            while (size < names.length * 2) size <<= 1;
+            slots = new int[size];
+            for (int id = 1; id < names.length; id++) {
+                int slot = hash(names[id], 0, names[id].length()) & (size - 1);
+                while (slots[slot] != 0) slot = (slot + 1) & (size - 1);
+                slots[slot] = id;
+            }
+        }
+
+        int lookup(CharSequence sequence, int start, int end) {
+            final int mask = slots.length - 1;
+            for (int slot = hash(sequence, start, end) & mask; ; slot = (slot + 1) & mask) {
+                final int id = slots[slot];
+                if (id == UNKNOWN || regionEquals(names[id], sequence, start, end)) return id;
+            }
+        }
+    }
+
+    private static volatile Table table = new Table(new String[]{null});
+
+    private SegmentDictionary() {
+    }
+
+    /**
+     * @return The id of the name, which is added if it is not known yet.
+     */
+    static synchronized int intern(String name) {
+        Table current = table;
+        int id = current.lookup(name, 0, name.length());
+        if (id != UNKNOWN) return id;
+
+        String[] names = Arrays.copyOf(current.names, current.names.length + 1);
+        id = names.length - 1;
+        names[id] = name;
+        table = new Table(names);
+        return id;
+    }
+
+    /**
+     * @return The number of ids handed out, including {@link #UNKNOWN}. Grows with every interned name.
+     */
+    static int size() {
+        return table.names.length;
+    }
+
+    /**
+     * @return The id of the characters in range [start, end), or {@link #UNKNOWN}.
+     */
+    static int lookup(CharSequence sequence, int start, int end) {
+        return table.lookup(sequence, start, end);
+    }
+
+    private static int hash(CharSequence sequence, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + sequence.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean regionEquals(String name, CharSequence sequence, int start, int end) {
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != sequence.charAt(start + i)) return false;
+        }
+        return true;
+    }
+}
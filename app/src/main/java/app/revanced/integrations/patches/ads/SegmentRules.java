@@ -0,0 +1,174 @@
+package app.revanced.integrations.patches.ads;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches sequences of component names against a {@link PathSegments}, in a single left-to-right walk.
+ * <p>
+ * Each pattern is one or more component names separated by '|', for example
+ * {@code ContainerType|video_action_button}. It matches when the names appear as consecutive segments of the path.
+ * A single name ending with '*', for example {@code download_*}, matches any segment whose name starts with it.
+ * Anything between two '*', for example {@code *download_*} or {@code *ContainerType|like_button*},
+ * matches if it occurs anywhere in the path, like {@link String#contains(CharSequence)}.
+ * These substrings are found by a character automaton, in one more pass over the path.
+ */
+final class SegmentRules {
+    private static final String SEPARATOR = "\\|";
+    private static final char PREFIX = '*';
+    private static final int MAX_PATTERNS = Long.SIZE;
+    private static final int ASCII_SIZE = 128;
+
+    private final PatternAutomaton automaton;
+    private final String[] prefixes;
+    private final long[] prefixBits;
+
+    /**
+     * Substrings of the path, or null if there are none.
+     */
+    @Nullable
+    private final PatternAutomaton infixAutomaton;
+    /**
+     * Symbol of every ASCII character in {@link #infixAutomaton}. Any other character is symbol 0.
+     */
+    private final int[] infixSymbols;
+
+    private SegmentRules(PatternAutomaton automaton, String[] prefixes, long[] prefixBits,
+                         @Nullable PatternAutomaton infixAutomaton, int[] infixSymbols) {
+        this.automaton = automaton;
+        this.prefixes = prefixes;
+        this.prefixBits = prefixBits;
+        this.infixAutomaton = infixAutomaton;
+        this.infixSymbols = infixSymbols;
+    }
+
+    /**
+     * @param patterns At most 64 patterns. Bit i of {@link #match(PathSegments)} is set, if patterns[i] matched.
+     */
+    static SegmentRules compile(String... patterns) {
+        if (patterns.length > MAX_PATTERNS)
+            throw new IllegalArgumentException("At most " + MAX_PATTERNS + " patterns are supported");
+
+        List<int[]> sequences = new ArrayList<>(patterns.length);
+        List<String> prefixes = new ArrayList<>();
+        List<Long> prefixBits = new ArrayList<>();
+        List<String> infixes = new ArrayList<>();
+        List<Integer> infixPatterns = new ArrayList<>();
+        int alphabetSize = 1;
+
+        for (int i = 0; i < patterns.length; i++) {
+            final String pattern = patterns[i];
+            if (pattern.length() > 2 && pattern.indexOf(PREFIX) == 0 && pattern.indexOf(PREFIX, 1) == pattern.length() - 1) {
+                infixes.add(pattern.substring(1, pattern.length() - 1));
+                infixPatterns.add(i);
+                sequences.add(new int[0]);
+                continue;
+            }
+            if (pattern.indexOf(PREFIX) == pattern.length() - 1 && pattern.indexOf('|') < 0) {
+                prefixes.add(pattern.substring(0, pattern.length() - 1));
+                prefixBits.add(1L << i);
+                sequences.add(new int[0]);
+                continue;
+            }
+
+            String[] names = pattern.split(SEPARATOR);
+            int[] sequence = new int[names.length];
+            for (int j = 0; j < names.length; j++) {
+                if (names[j].isEmpty() || names[j].indexOf(PREFIX) >= 0)
+                    throw new IllegalArgumentException("Invalid segment pattern: " + pattern);
+
+                sequence[j] = SegmentDictionary.intern(names[j]);
+                alphabetSize = Math.max(alphabetSize, sequence[j] + 1);
+            }
+            sequences.add(sequence);
+        }
+
+        PatternAutomaton.Builder builder = new PatternAutomaton.Builder(alphabetSize);
+        for (int i = 0; i < sequences.size(); i++) {
+            builder.add(sequences.get(i), i);
+        }
+
+        int[] infixSymbols = new int[ASCII_SIZE];
+        return new SegmentRules(builder.build(), prefixes.toArray(new String[0]), toArray(prefixBits),
+                compileInfixes(infixes, infixPatterns, infixSymbols), infixSymbols);
+    }
+
+    /**
+     * @param symbols Receives the symbol of every ASCII character of the infixes.
+     */
+    @Nullable
+    private static PatternAutomaton compileInfixes(List<String> infixes, List<Integer> patterns, int[] symbols) {
+        if (infixes.isEmpty()) return null;
+
+        // Symbol 0 is every character that is not part of any infix.
+        int symbolCount = 1;
+        for (String infix : infixes) {
+            for (int i = 0; i < infix.length(); i++) {
+                final char c = infix.charAt(i);
+                if (c >= ASCII_SIZE) throw new IllegalArgumentException("Invalid segment pattern: *" + infix + "*");
+                if (symbols[c] == 0) symbols[c] = symbolCount++;
+            }
+        }
+
+        PatternAutomaton.Builder builder = new PatternAutomaton.Builder(symbolCount);
+        for (int i = 0; i < infixes.size(); i++) {
+            final String infix = infixes.get(i);
+            int[] sequence = new int[infix.length()];
+            for (int j = 0; j < sequence.length; j++) {
+                sequence[j] = symbols[infix.charAt(j)];
+            }
+            builder.add(sequence, patterns.get(i));
+        }
+        return builder.build();
+    }
+
+    private static long[] toArray(List<Long> list) {
+        long[] array = new long[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * @return Bit set of the patterns that matched the path.
+     */
+    long match(PathSegments segments) {
+        final int alphabetSize = automaton.alphabetSize();
+        long matched = 0;
+        int state = PatternAutomaton.ROOT;
+
+        for (int i = 0, count = segments.count(); i < count; i++) {
+            final int id = segments.id(i);
+            // Names interned after this was compiled are not part of any pattern.
+            state = automaton.next(state, id < alphabetSize ? id : SegmentDictionary.UNKNOWN);
+            if (automaton.isMatch(state)) {
+                for (int pattern : automaton.values(state)) {
+                    matched |= 1L << pattern;
+                }
+            }
+
+            for (int j = 0; j < prefixes.length; j++) {
+                if (segments.nameStartsWith(i, prefixes[j])) matched |= prefixBits[j];
+            }
+        }
+        if (infixAutomaton != null) matched |= matchInfixes(segments.getPath());
+        return matched;
+    }
+
+    private long matchInfixes(CharSequence path) {
+        final PatternAutomaton automaton = infixAutomaton;
+        long matched = 0;
+        int state = PatternAutomaton.ROOT;
+        for (int i = 0, length = path.length(); i < length; i++) {
+            final char c = path.charAt(i);
+            state = automaton.next(state, c < ASCII_SIZE ? infixSymbols[c] : 0);
+            for (int pattern : automaton.values(state)) {
+                matched |= 1L << pattern;
+            }
+        }
+        return matched;
+    }
+}
@@ -0,0 +1,98 @@
+package app.revanced.integrations.patches.ads;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Proves cheaply that none of a set of patterns occurs in a path.
+ * <p>
+ * One trigram of every pattern is hashed into a bitset. A path that contains a pattern
+ * also contains its trigram, so if no trigram of the path hits a set bit, no pattern can occur in it.
+ * A hit only means a pattern may occur, and the path must be scanned.
+ */
+final class TrigramFilter {
+    private static final int Q = 3;
+    private static final int BITS = 1 << 14;
+    private static final int MASK = BITS - 1;
+
+    /**
+     * Component names found in most paths. Trigrams that occur in them make poor anchors.
+     */
+    private static final String COMMON_NAMES = "ContainerType|ScrollableContainerType|CellType|ImageType|TextType|ElementType"
+            + "|compact_video.eml|video_with_context.eml|home_video_with_context|related_video_with_context"
+            + "|video_metadata|thumbnail|avatar|compact_channel|horizontal_shelf|rich_grid|comment_thread"
+            + "|inline_player|button|icon|layout|shelf|item|header|footer|component";
+
+    private final long[] bits;
+
+    private TrigramFilter(long[] bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * @return The filter, or null if a pattern is too short to have a trigram.
+     */
+    @Nullable
+    static TrigramFilter build(Iterable<String> patterns) {
+        long[] bits = new long[BITS / Long.SIZE];
+        for (String pattern : patterns) {
+            if (pattern.isEmpty()) continue; // never matched by the automaton either
+            if (pattern.length() < Q) return null;
+
+            final int anchor = anchorOf(pattern, bits);
+            final int hash = hash(pattern.charAt(anchor), pattern.charAt(anchor + 1), pattern.charAt(anchor + 2));
+            bits[hash >>> 6] |= 1L << hash;
+        }
+        return new TrigramFilter(bits);
+    }
+
+    /**
+     * Prefer the trigram that occurs least in {@link #COMMON_NAMES}.
+     * On a tie, prefer a trigram whose bit is already set, so the bitset stays sparse.
+     */
+    private static int anchorOf(String pattern, long[] bits) {
+        int best = 0;
+        int bestScore = Integer.MAX_VALUE;
+        for (int i = 0; i + Q <= pattern.length(); i++) {
+            int score = 2 * occurrences(pattern.substring(i, i + Q));
+            final int hash = hash(pattern.charAt(i), pattern.charAt(i + 1), pattern.charAt(i + 2));
+            if ((bits[hash >>> 6] & (1L << hash)) == 0) score++;
+
+            if (score < bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static int occurrences(String trigram) {
+        int count = 0;
+        for (int i = COMMON_NAMES.indexOf(trigram); i >= 0; i = COMMON_NAMES.indexOf(trigram, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int hash(char a, char b, char c) {
+        return ((a * 31 + b) * 31 + c) * 0x9E3779B1 >>> 18 & MASK;
+    }
+
+    /**
+     * @return False if no pattern can occur in the path.
+     */
+    boolean mayMatch(CharSequence path) {
+        final int length = path.length();
+        if (length < Q) return false;
+
+        char a = path.charAt(0);
+        char b = path.charAt(1);
+        for (int i = 2; i < length; i++) {
+            final char c = path.charAt(i);
+            final int hash = hash(a, b, c);
+            if ((bits[hash >>> 6] & (1L << hash)) != 0) return true;
+            a = b;
+            b = c;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,134 @@
+package app.revanced.integrations.patches.ads;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded cache of filter verdicts, keyed by a 64-bit hash of the component path.
+ * <p>
+ * The table is open addressed and 4-way set associative. Each slot is a single long,
+ * which holds the upper 62 bits of the path hash, and the verdict and if no path rule matched in the lowest two bits,
+ * so entries are read and written atomically without locks or boxing.
+ * Within a set the most recently used entry is kept first, and inserting into a full set evicts the last one.
+ * <p>
+ * A cache belongs to one {@link PathMatcher}. When the rules or the {@link RulePack} change, a new matcher is compiled
+ * and a new empty cache replaces this one. Saving a setting that does not change the rules keeps both.
+ */
+final class VerdictCache {
+    static final int NOT_CACHED = -1;
+    /**
+     * Bit of a cached entry set if the component is blocked.
+     */
+    static final int BLOCKED = 1;
+    /**
+     * Bit of a cached entry set if no path rule was found in the path, so it passed the prefilter for nothing.
+     */
+    static final int UNMATCHED = 2;
+    private static final long FLAGS = BLOCKED | UNMATCHED;
+
+    private static final int WAYS = 4;
+    private static final long EMPTY = 0;
+
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * The matcher the verdicts in this cache were decided with.
+     */
+    final PathMatcher matcher;
+    /**
+     * The capacity this cache was created with, before rounding.
+     */
+    final int requestedCapacity;
+
+    private final AtomicLongArray slots;
+    private final int setMask;
+
+    /**
+     * @param capacity Maximum number of cached verdicts. Rounded up to a power of two.
+     */
+    VerdictCache(PathMatcher matcher, int capacity) {
+        this.matcher = matcher;
+        this.requestedCapacity = capacity;
+
+        int size = WAYS;
+        while (size < capacity && size < (1 << 30)) size <<= 1;
+        this.slots = new AtomicLongArray(size);
+        this.setMask = size / WAYS - 1;
+    }
+
+    /**
+     * @return The cached {@link #BLOCKED} and {@link #UNMATCHED} bits, or {@link #NOT_CACHED}.
+     */
+    int get(long hash) {
+        final long key = key(hash);
+        final int start = setStart(hash);
+
+        for (int i = 0; i < WAYS; i++) {
+            final long entry = slots.get(start + i);
+            if (entry == EMPTY) break;
+            if ((entry & ~FLAGS) != key) continue;
+
+            if (i > 0) {
+                // Move to the front of the set. Racing writers can at worst drop an entry.
+                final long first = slots.get(start);
+                slots.set(start, entry);
+                slots.set(start + i, first);
+            }
+            hitCount.incrementAndGet();
+            return (int) (entry & FLAGS);
+        }
+
+        missCount.incrementAndGet();
+        return NOT_CACHED;
+    }
+
+    void put(long hash, boolean blocked, boolean unmatched) {
+        final int start = setStart(hash);
+        for (int i = WAYS - 1; i > 0; i--) {
+            slots.set(start + i, slots.get(start + i - 1));
+        }
+        slots.set(start, key(hash) | (blocked ? BLOCKED : 0) | (unmatched ? UNMATCHED : 0));
+    }
+
+    private int setStart(long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & setMask) * WAYS;
+    }
+
+    private static long key(long hash) {
+        final long key = hash & ~FLAGS;
+        return key == EMPTY ? FLAGS + 1 : key;
+    }
+
+    /**
+     * 64-bit hash of the characters, computed without copying them into a String.
+     */
+    static long hash(CharSequence sequence) {
+        long hash = 0xcbf29ce484222325L; // FNV-1a
+        for (int i = 0, length = sequence.length(); i < length; i++) {
+            hash ^= sequence.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Final avalanche, so the low bits used for the set index are well distributed.
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * With a {@link PathMatcher#isSurfaceDependent() surface dependent} matcher,
+     * the same path can be blocked on one surface and not on another, so the surface is part of the key.
+     */
+    static long hash(CharSequence path, FilterSurface surface) {
+        return hash(path) ^ surface.ordinal() * 0x9e3779b97f4a7c15L;
+    }
+
+    static long getHitCount() {
+        return hitCount.get();
+    }
+
+    static long getMissCount() {
+        return missCount.get();
+    }
+}
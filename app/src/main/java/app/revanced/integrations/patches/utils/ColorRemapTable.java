@@ -0,0 +1,115 @@
+package app.revanced.integrations.patches.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import app.revanced.integrations.settings.SettingsEnum;
+
+/**
+ * Replacement colors, looked up with a single hash probe per color in the common case.
+ * <p>
+ * The table is open addressed with linear probing, and at most half full.
+ * Each slot is a single long, which holds the original color in the upper 32 bits and the replacement in the lower 32 bits.
+ * A color that is replaced with itself is never stored, so an empty slot is 0.
+ * <p>
+ * Immutable once built, apart from the hit counters, and safe to share between the Litho threads.
+ * Hits are only counted while {@link SettingsEnum#LITHO_THEME_REMAP_METRICS} is enabled.
+ */
+final class ColorRemapTable {
+    static final ColorRemapTable EMPTY = new Builder().build(null, false);
+
+    private static final long EMPTY_SLOT = 0;
+
+    /**
+     * Palette setting and theme this table was built for. The palette is null for {@link #EMPTY}.
+     */
+    final String palette;
+    final boolean darkTheme;
+
+    private final long[] slots;
+    private final int mask;
+    private final int shift;
+    private final AtomicLongArray hits;
+
+    private ColorRemapTable(String palette, boolean darkTheme, long[] slots) {
+        this.palette = palette;
+        this.darkTheme = darkTheme;
+        this.slots = slots;
+        this.mask = slots.length - 1;
+        this.shift = Integer.numberOfLeadingZeros(mask);
+        this.hits = new AtomicLongArray(slots.length);
+    }
+
+    /**
+     * @return The replacement of the color, or the color itself if it is not replaced.
+     */
+    int remap(int color) {
+        int i = (color * 0x9e3779b9) >>> shift & mask;
+        while (true) {
+            final long slot = slots[i];
+            if (slot == EMPTY_SLOT) return color;
+            if ((int) (slot >>> 32) == color) {
+                if (SettingsEnum.LITHO_THEME_REMAP_METRICS.getBoolean()) hits.incrementAndGet(i);
+                return (int) slot;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (long slot : slots) if (slot != EMPTY_SLOT) size++;
+        return size;
+    }
+
+    /**
+     * @return One line per replaced color that was looked up, with the number of lookups.
+     */
+    String getHitReport() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < slots.length; i++) {
+            final long count = hits.get(i);
+            if (slots[i] == EMPTY_SLOT || count == 0) continue;
+            builder.append(String.format(Locale.US, "#%08X -> #%08X: %d%n", (int) (slots[i] >>> 32), (int) slots[i], count));
+        }
+        return builder.toString();
+    }
+
+    static final class Builder {
+        private final Map<Integer, Integer> colors = new LinkedHashMap<>();
+
+        /**
+         * Replace the color. Replaces an earlier replacement of the same color.
+         */
+        Builder put(int color, int replacement) {
+            colors.put(color, replacement);
+            return this;
+        }
+
+        Builder putAll(int[] colors, int replacement) {
+            for (int color : colors) put(color, replacement);
+            return this;
+        }
+
+        ColorRemapTable build(String palette, boolean darkTheme) {
+            int capacity = 8;
+            while (capacity < colors.size() * 2) capacity <<= 1;
+
+            long[] slots = new long[capacity];
+            final int mask = capacity - 1;
+            final int shift = Integer.numberOfLeadingZeros(mask);
+            for (var entry : colors.entrySet()) {
+                final int color = entry.getKey();
+                final int replacement = entry.getValue();
+                if (color == replacement) continue;
+
+                int i = (color * 0x9e3779b9) >>> shift & mask;
+                while (slots[i] != EMPTY_SLOT) i = (i + 1) & mask;
+                slots[i] = (long) color << 32 | (replacement & 0xFFFFFFFFL);
+            }
+            return new ColorRemapTable(palette, darkTheme, slots);
+        }
+    }
+}
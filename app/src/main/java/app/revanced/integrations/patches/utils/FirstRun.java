@@ -13,6 +13,7 @@ import android.content.Context;
 import java.util.Objects;
 
 import app.revanced.integrations.BuildConfig;
+import app.revanced.integrations.patches.ads.LithoFilterPatch;
 import app.revanced.integrations.sponsorblock.PlayerController;
 import app.revanced.integrations.settings.SettingsEnum;
 
@@ -40,6 +41,9 @@ public class FirstRun {
      * The version of the current integrations is saved to YouTube's SharedPreferences to identify if the app was first installed.
      */
     public static void initializationRVX(Context context) {
+        // Called on every start of the main activity. Compile the Litho filters before the first feed is inflated.
+        LithoFilterPatch.warmUp();
+
         var integrationVersion = getString(context, YOUTUBE, "integrations", null);
         if (!Objects.equals(integrationVersion, BuildConfig.VERSION_NAME))
             saveString(context, YOUTUBE, "integrations", BuildConfig.VERSION_NAME);
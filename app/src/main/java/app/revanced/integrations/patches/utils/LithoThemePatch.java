@@ -4,8 +4,14 @@ import static app.revanced.integrations.utils.ReVancedUtils.getContext;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.graphics.Color;
+
 import androidx.core.content.ContextCompat;
 
+import app.revanced.integrations.settings.SettingsEnum;
+import app.revanced.integrations.utils.LogHelper;
+import app.revanced.integrations.utils.ThemeHelper;
+
 public class LithoThemePatch {
     private static final int[] WHITE_VALUES = {
         -1, // comments chip background
@@ -21,24 +27,70 @@ public class LithoThemePatch {
         -98492127 // video chapters list background
     };
 
-    // background colors
-    private static int whiteColor = 0;
-    private static int blackColor = 0;
+    private static final String PALETTE_SEPARATORS = "[,\\s]+";
+
+    /**
+     * Rebuilt when the palette or the theme changes.
+     */
+    private static volatile ColorRemapTable remapTable;
 
     public static int applyLithoTheme(int originalValue) {
-        if (anyEquals(originalValue, DARK_VALUES)) return getBlackColor();
-        else if (anyEquals(originalValue, WHITE_VALUES)) return getWhiteColor();
-        return originalValue;
+        return getRemapTable().remap(originalValue);
     }
 
-    private static int getBlackColor() {
-        if (blackColor == 0) blackColor = getColor("yt_black1");
-        return blackColor;
+    /**
+     * @return The number of lookups of each replaced color while {@link SettingsEnum#LITHO_THEME_REMAP_METRICS} was enabled,
+     * since the table was last built. Shown with the filter metrics.
+     */
+    public static String getRemapReport() {
+        final ColorRemapTable table = remapTable;
+        return table == null ? "" : table.getHitReport();
     }
 
-    private static int getWhiteColor() {
-        if (whiteColor == 0) whiteColor = getColor("yt_white1");
-        return whiteColor;
+    private static ColorRemapTable getRemapTable() {
+        final ColorRemapTable table = remapTable;
+        String palette = SettingsEnum.LITHO_THEME_PALETTE.getString();
+        if (palette == null) palette = "";
+        final boolean darkTheme = ThemeHelper.getDayNightTheme();
+        if (table != null && table.darkTheme == darkTheme && palette.equals(table.palette)) return table;
+
+        // Without a context the background colors can not be resolved yet, so keep the original colors until they can.
+        final int blackColor = getColor("yt_black1");
+        final int whiteColor = getColor("yt_white1");
+        if (blackColor == 0 || whiteColor == 0) return ColorRemapTable.EMPTY;
+
+        ColorRemapTable.Builder builder = new ColorRemapTable.Builder()
+                .putAll(DARK_VALUES, blackColor)
+                .putAll(WHITE_VALUES, whiteColor);
+        putPalette(builder, palette);
+        final ColorRemapTable updated = builder.build(palette, darkTheme);
+
+        if (table != null) {
+            final String report = table.getHitReport();
+            if (!report.isEmpty()) LogHelper.info(LithoThemePatch.class, "Remapped colors:\n" + report);
+        }
+        LogHelper.info(LithoThemePatch.class, "Built color table with " + updated.size() + " colors");
+        remapTable = updated;
+        return updated;
+    }
+
+    /**
+     * @param palette Entries of the form {@code #original=#replacement}, separated by commas or whitespace.
+     *                The colors are parsed by {@link Color#parseColor(String)}. An entry replaces a built-in one.
+     */
+    private static void putPalette(ColorRemapTable.Builder builder, String palette) {
+        if (palette == null || palette.isEmpty()) return;
+
+        for (String entry : palette.trim().split(PALETTE_SEPARATORS)) {
+            if (entry.isEmpty()) continue;
+            final int separator = entry.indexOf('=');
+            try {
+                if (separator < 0) throw new IllegalArgumentException("Missing '='");
+                builder.put(Color.parseColor(entry.substring(0, separator)), Color.parseColor(entry.substring(separator + 1)));
+            } catch (IllegalArgumentException ex) {
+                LogHelper.printException(LithoThemePatch.class, "Invalid palette entry: " + entry, ex);
+            }
+        }
     }
 
     /**
@@ -55,11 +107,6 @@ public class LithoThemePatch {
                 .getIdentifier(name, "color", context.getPackageName())
         ) : 0;
     }
-
-    private static boolean anyEquals(int value, int... of) {
-        for (int v : of) if (value == v) return true;
-        return false;
-    }
 }
 
 
@@ -18,6 +18,14 @@ public class ReturnYouTubeDislikePatch {
        ReturnYouTubeDislike.newVideoLoaded(videoId);
     }
 
+    /**
+     * Called once, with a callback that invalidates the like/dislike litho components,
+     * so they are created again after the dislikes were fetched
+     */
+    public static void setRebindHook(Runnable hook) {
+        ReturnYouTubeDislike.setRebindHook(hook);
+    }
+
     /**
      * Called when a litho text component is created
      */
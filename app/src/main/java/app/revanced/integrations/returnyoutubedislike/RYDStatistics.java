@@ -0,0 +1,95 @@
+package app.revanced.integrations.returnyoutubedislike;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long the Litho threads waited for votes, how often the dislikes were shown later instead,
+ * how often the votes of an opened video were cached, and how many fetches were shared.
+ * <p>
+ * Lock-free, recorded for every like/dislike component and every fetch.
+ */
+final class RYDStatistics {
+    /**
+     * Components whose votes were already fetched, so nothing was waited for.
+     */
+    private static final AtomicLong readyCount = new AtomicLong();
+    private static final AtomicLong waitCount = new AtomicLong();
+    private static final AtomicLong timeoutCount = new AtomicLong();
+    private static final AtomicLong blockedNanos = new AtomicLong();
+    private static final AtomicLong maxBlockedNanos = new AtomicLong();
+
+    /**
+     * Components created without dislikes, to be updated once the votes are fetched.
+     */
+    private static final AtomicLong deferredCount = new AtomicLong();
+    private static final AtomicLong rebindCount = new AtomicLong();
+
+    /**
+     * Opened videos whose votes were cached, fresh or stale, and whose votes had to be fetched.
+     */
+    private static final AtomicLong cacheHitCount = new AtomicLong();
+    private static final AtomicLong cacheMissCount = new AtomicLong();
+
+    /**
+     * Fetches that were not started, because the same video was already being fetched.
+     */
+    private static final AtomicLong duplicateFetchCount = new AtomicLong();
+
+    private RYDStatistics() {
+    }
+
+    static void recordReady() {
+        readyCount.incrementAndGet();
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} when the wait started.
+     */
+    static void recordWait(long startNanos, boolean timedOut) {
+        final long nanos = System.nanoTime() - startNanos;
+        waitCount.incrementAndGet();
+        if (timedOut) timeoutCount.incrementAndGet();
+        blockedNanos.addAndGet(nanos);
+
+        long max;
+        do {
+            max = maxBlockedNanos.get();
+        } while (nanos > max && !maxBlockedNanos.compareAndSet(max, nanos));
+    }
+
+    static void recordDeferred() {
+        deferredCount.incrementAndGet();
+    }
+
+    static void recordRebind() {
+        rebindCount.incrementAndGet();
+    }
+
+    static void recordCacheLookup(boolean hit) {
+        (hit ? cacheHitCount : cacheMissCount).incrementAndGet();
+    }
+
+    static void recordDuplicateFetch() {
+        duplicateFetchCount.incrementAndGet();
+    }
+
+    static String getReport() {
+        final long waits = waitCount.get();
+        final long blocked = blockedNanos.get();
+        return String.format(Locale.US,
+                "Votes ready: %d, waited: %d, timed out: %d%n"
+                        + "Blocked: %d ms total, %.1f ms average, %d ms max%n"
+                        + "Deferred: %d, rebound: %d%n"
+                        + "Vote cache: hits %d, misses %d%n"
+                        + "Duplicate fetches avoided: %d%n",
+                readyCount.get(), waits, timeoutCount.get(),
+                TimeUnit.NANOSECONDS.toMillis(blocked),
+                waits == 0 ? 0.0 : blocked / 1e6 / waits,
+                TimeUnit.NANOSECONDS.toMillis(maxBlockedNanos.get()),
+                deferredCount.get(), rebindCount.get(),
+                cacheHitCount.get(), cacheMissCount.get(),
+                duplicateFetchCount.get());
+    }
+}
@@ -0,0 +1,295 @@
+package app.revanced.integrations.returnyoutubedislike;
+
+import android.content.Context;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import app.revanced.integrations.returnyoutubedislike.requests.RYDVoteData;
+import app.revanced.integrations.settings.SettingsEnum;
+import app.revanced.integrations.utils.LogHelper;
+import app.revanced.integrations.utils.ReVancedUtils;
+
+/**
+ * Recently fetched votes, so revisiting a video does not fetch its votes again.
+ * <p>
+ * Entries are fresh for {@link SettingsEnum#RYD_VOTE_CACHE_TTL} seconds. After that they are stale:
+ * {@link #get(String, Refresher)} still returns them, so they can be shown right away,
+ * but only after it asked for the votes to be fetched again. {@link #getFresh(String)} never returns them.
+ * Entries older than {@link #MAX_STALE_AGE_MILLIS} are dropped. If the cache is full, the least recently used entry is evicted.
+ * <p>
+ * The entries are kept in a {@link RYDVoteStore}, so they survive app restarts.
+ * The store is opened by the first call once the app context is set, read in the background, and written by a single disk thread.
+ * Votes cached before that are written once the store is read.
+ */
+final class RYDVoteCache {
+    private static final int MAX_ENTRIES = 500;
+
+    private static final long MAX_STALE_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    static final class Entry {
+        final RYDVoteData voteData;
+        /**
+         * {@link System#currentTimeMillis()} when the votes were fetched.
+         */
+        final long fetchTime;
+
+        Entry(RYDVoteData voteData, long fetchTime) {
+            this.voteData = voteData;
+            this.fetchTime = fetchTime;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() - fetchTime < getTimeToLiveMillis();
+        }
+    }
+
+    interface Refresher {
+        /**
+         * Fetch the votes of the video again, without blocking.
+         */
+        void refresh(String videoId);
+    }
+
+    @GuardedBy("entries")
+    private static final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Reads and writes the {@link #store}, in order.
+     */
+    private static final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Null until there is a context to find the app storage.
+     */
+    @Nullable
+    private static volatile RYDVoteStore store;
+
+    /**
+     * Completes when the stored entries were read. Set before {@link #store}.
+     */
+    @Nullable
+    private static volatile Future<?> storeLoaded;
+
+    private static boolean loggedMissingContext;
+
+    private RYDVoteCache() {
+    }
+
+    private static long getTimeToLiveMillis() {
+        return Math.max(0, SettingsEnum.RYD_VOTE_CACHE_TTL.getInt()) * 1000L;
+    }
+
+    static boolean isEnabled() {
+        return getTimeToLiveMillis() > 0;
+    }
+
+    /**
+     * Open and read the store, if not done yet and the app context is set.
+     *
+     * @return The store, or null if there is no context yet.
+     */
+    @Nullable
+    private static RYDVoteStore openStore() {
+        RYDVoteStore opened = store;
+        if (opened != null) return opened;
+
+        synchronized (RYDVoteCache.class) {
+            if (store != null) return store;
+            Context context = ReVancedUtils.getContext();
+            if (context == null) {
+                if (!loggedMissingContext) {
+                    loggedMissingContext = true;
+                    LogHelper.info(RYDVoteCache.class, "No context yet, votes are not persisted until there is one");
+                }
+                return null;
+            }
+            opened = new RYDVoteStore(context);
+            final RYDVoteStore loading = opened;
+            storeLoaded = diskExecutor.submit(() -> loadStore(loading));
+            store = opened;
+            return opened;
+        }
+    }
+
+    /**
+     * @return If the stored entries were read, or could not be read.
+     * Until then, the cache only finds the votes fetched since the app started.
+     */
+    static boolean isLoaded() {
+        openStore();
+        Future<?> loaded = storeLoaded;
+        return loaded == null || loaded.isDone();
+    }
+
+    /**
+     * Call off the main thread.
+     */
+    static void awaitLoaded() {
+        ReVancedUtils.verifyOffMainThread();
+        openStore();
+        Future<?> loaded = storeLoaded;
+        if (loaded == null) return;
+        try {
+            loaded.get();
+        } catch (Exception ex) {
+            LogHelper.printException(RYDVoteCache.class, "Failed to wait for the vote cache", ex);
+        }
+    }
+
+    /**
+     * @return The fresh cached votes of the video, or null if they are not cached or stale.
+     */
+    @Nullable
+    static Entry getFresh(String videoId) {
+        final Entry entry = getEntry(videoId);
+        return entry != null && entry.isFresh() ? entry : null;
+    }
+
+    /**
+     * @param refresher Called before a stale entry is returned.
+     * @return The cached votes of the video, fresh or stale, or null if they are not cached.
+     */
+    @Nullable
+    static Entry get(String videoId, Refresher refresher) {
+        final Entry entry = getEntry(videoId);
+        if (entry != null && !entry.isFresh()) refresher.refresh(videoId);
+        return entry;
+    }
+
+    @Nullable
+    private static Entry getEntry(String videoId) {
+        Objects.requireNonNull(videoId);
+        if (!isEnabled()) return null;
+        openStore();
+
+        synchronized (entries) {
+            Entry entry = entries.get(videoId);
+            if (entry == null) return null;
+            if (System.currentTimeMillis() - entry.fetchTime >= MAX_STALE_AGE_MILLIS) {
+                entries.remove(videoId);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    static void put(String videoId, RYDVoteData voteData) {
+        Objects.requireNonNull(videoId);
+        Objects.requireNonNull(voteData);
+        if (!isEnabled()) return;
+        openStore();
+
+        final long fetchTime = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(videoId, new Entry(voteData, fetchTime));
+        }
+        writeStore(store -> store.append(videoId, voteData, fetchTime));
+    }
+
+    /**
+     * Forget the votes of the video, after the user voted on it.
+     */
+    static void remove(String videoId) {
+        final Entry removed;
+        synchronized (entries) {
+            removed = entries.remove(videoId);
+        }
+        if (removed != null) writeStore(store -> store.appendRemoved(videoId));
+    }
+
+    static void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        RYDVoteStore opened = store;
+        if (opened != null) diskExecutor.execute(opened::delete);
+    }
+
+    private interface StoreWrite {
+        void write(RYDVoteStore store) throws IOException;
+    }
+
+    /**
+     * Votes cached before the store was opened are written by {@link #loadStore(RYDVoteStore)}.
+     */
+    private static void writeStore(StoreWrite write) {
+        RYDVoteStore opened = store;
+        if (opened == null) return;
+        diskExecutor.execute(() -> {
+            try {
+                write.write(opened);
+                compactStoreIfNeeded(opened);
+            } catch (IOException ex) {
+                LogHelper.printException(RYDVoteCache.class, "Failed to write the vote cache", ex);
+            }
+        });
+    }
+
+    private static void loadStore(RYDVoteStore store) {
+        final long start = System.currentTimeMillis();
+        final Map<String, RYDVoteStore.Record> records = store.read();
+        // Votes fetched since the app started are newer. Those fetched before the store was opened are not written yet.
+        final Map<String, Entry> unsaved = new LinkedHashMap<>();
+        synchronized (entries) {
+            for (var entry : entries.entrySet()) {
+                RYDVoteStore.Record record = records.get(entry.getKey());
+                if (record == null || record.fetchTime < entry.getValue().fetchTime) {
+                    unsaved.put(entry.getKey(), entry.getValue());
+                }
+            }
+            for (var record : records.values()) {
+                if (start - record.fetchTime >= MAX_STALE_AGE_MILLIS) continue;
+                final String videoId = record.voteData.videoId;
+                if (!entries.containsKey(videoId)) entries.put(videoId, new Entry(record.voteData, record.fetchTime));
+            }
+        }
+        LogHelper.info(RYDVoteCache.class, "Loaded " + records.size() + " cached votes in "
+                + (System.currentTimeMillis() - start) + " ms");
+        try {
+            for (var entry : unsaved.entrySet()) {
+                store.append(entry.getKey(), entry.getValue().voteData, entry.getValue().fetchTime);
+            }
+            compactStoreIfNeeded(store);
+        } catch (IOException ex) {
+            LogHelper.printException(RYDVoteCache.class, "Failed to compact the vote cache", ex);
+        }
+    }
+
+    /**
+     * Called on the disk thread.
+     */
+    private static void compactStoreIfNeeded(RYDVoteStore store) throws IOException {
+        Map<String, RYDVoteStore.Record> records = new LinkedHashMap<>();
+        synchronized (entries) {
+            if (!store.needsCompaction(entries.size())) return;
+
+            final long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (now - entry.getValue().fetchTime >= MAX_STALE_AGE_MILLIS) {
+                    iterator.remove();
+                    continue;
+                }
+                records.put(entry.getKey(), new RYDVoteStore.Record(entry.getValue().voteData, entry.getValue().fetchTime));
+            }
+        }
+        store.compact(records);
+    }
+}
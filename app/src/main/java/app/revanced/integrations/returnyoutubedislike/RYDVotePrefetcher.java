@@ -0,0 +1,191 @@
+package app.revanced.integrations.returnyoutubedislike;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import app.revanced.integrations.returnyoutubedislike.requests.RYDVoteData;
+import app.revanced.integrations.returnyoutubedislike.requests.ReturnYouTubeDislikeApi;
+import app.revanced.integrations.settings.SettingsEnum;
+import app.revanced.integrations.utils.LogHelper;
+import app.revanced.integrations.utils.ReVancedUtils;
+
+/**
+ * Fetches the votes of videos shown in the feeds into the {@link RYDVoteCache}, before they are opened.
+ * <p>
+ * The most recently shown video is fetched first, as it is the one closest to the viewport.
+ * Videos that scrolled out of the queue are dropped. Votes are fetched one at a time on a low priority thread of its own,
+ * so prefetching never delays the fetch of the opened video, and at most {@link #MAX_FETCHES_PER_MINUTE} per minute.
+ * <p>
+ * If the API asks to slow down, prefetching stops for {@link #MIN_BACKOFF_MILLIS}, doubled every time it happens again,
+ * up to {@link #MAX_BACKOFF_MILLIS}. A successful fetch resets the backoff.
+ */
+final class RYDVotePrefetcher {
+    private static final int MAX_QUEUED = 24;
+    private static final int MAX_FETCHES_PER_MINUTE = 30;
+
+    private static final long MIN_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "revanced-ryd-prefetch");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Videos waiting to be fetched, most recently shown last.
+     */
+    @GuardedBy("queue")
+    private static final ArrayDeque<String> queue = new ArrayDeque<>();
+
+    /**
+     * Videos that are queued or being fetched.
+     */
+    @GuardedBy("queue")
+    private static final Set<String> pending = new HashSet<>();
+
+    /**
+     * If a fetch is submitted to the {@link #executor}. Only one is, so the next video is picked when it runs.
+     */
+    @GuardedBy("queue")
+    private static boolean fetchScheduled;
+
+    @GuardedBy("queue")
+    private static long budgetPeriodStart;
+    @GuardedBy("queue")
+    private static int budgetUsed;
+
+    @GuardedBy("queue")
+    private static long backoffMillis;
+    @GuardedBy("queue")
+    private static long backoffUntil;
+
+    private RYDVotePrefetcher() {
+    }
+
+    static boolean isEnabled() {
+        return SettingsEnum.RYD_PREFETCH_VOTES.getBoolean() && RYDVoteCache.isEnabled();
+    }
+
+    /**
+     * Called when a video is shown in a feed. Can be called repeatedly for the same video.
+     */
+    static void offer(String videoId) {
+        // there is no app context yet, so nothing to show the votes in
+        if (ReVancedUtils.getContext() == null) return;
+
+        synchronized (queue) {
+            if (pending.contains(videoId)) return;
+        }
+        if (RYDVoteCache.getFresh(videoId) != null) return;
+
+        synchronized (queue) {
+            if (!pending.add(videoId)) return;
+            queue.addLast(videoId);
+            if (queue.size() > MAX_QUEUED) {
+                // scrolled past, most likely
+                pending.remove(queue.removeFirst());
+            }
+            scheduleFetchIfNeeded();
+        }
+    }
+
+    /**
+     * Called when the video is opened, and its votes are fetched without waiting for the prefetch.
+     */
+    static void remove(String videoId) {
+        synchronized (queue) {
+            if (queue.remove(videoId)) pending.remove(videoId);
+        }
+    }
+
+    static void clear() {
+        synchronized (queue) {
+            pending.removeAll(queue);
+            queue.clear();
+        }
+    }
+
+    @GuardedBy("queue")
+    private static void scheduleFetchIfNeeded() {
+        if (fetchScheduled || queue.isEmpty() || !canFetch(System.currentTimeMillis())) return;
+        fetchScheduled = true;
+        executor.execute(RYDVotePrefetcher::fetchNext);
+    }
+
+    @GuardedBy("queue")
+    private static boolean canFetch(long now) {
+        if (now < backoffUntil) return false;
+        if (now - budgetPeriodStart >= TimeUnit.MINUTES.toMillis(1)) {
+            budgetPeriodStart = now;
+            budgetUsed = 0;
+        }
+        return budgetUsed < MAX_FETCHES_PER_MINUTE;
+    }
+
+    /**
+     * Fetch the votes of the most recently shown video, then schedule the next one.
+     */
+    private static void fetchNext() {
+        String videoId = null;
+        RYDVoteData votes = null;
+        try {
+            // the stored votes of the previous app session may already include the queued videos
+            RYDVoteCache.awaitLoaded();
+            videoId = takeNext();
+            if (videoId != null) votes = ReturnYouTubeDislike.fetchVotes(videoId);
+        } catch (Exception ex) {
+            LogHelper.printException(RYDVotePrefetcher.class, "Failed to prefetch votes: " + videoId, ex);
+        } finally {
+            onFetched(videoId, votes);
+        }
+    }
+
+    /**
+     * @return The next video to fetch, or null if there is none or fetching has to wait.
+     */
+    @Nullable
+    private static String takeNext() {
+        synchronized (queue) {
+            while (isEnabled() && canFetch(System.currentTimeMillis())) {
+                final String videoId = queue.pollLast();
+                if (videoId == null) break;
+
+                if (RYDVoteCache.getFresh(videoId) != null) {
+                    pending.remove(videoId);
+                    continue;
+                }
+                budgetUsed++;
+                return videoId;
+            }
+            return null;
+        }
+    }
+
+    private static void onFetched(@Nullable String videoId, @Nullable RYDVoteData votes) {
+        synchronized (queue) {
+            fetchScheduled = false;
+            if (videoId == null) return; // the queue is empty, or the budget is used up until more videos are shown
+
+            pending.remove(videoId);
+            if (votes != null) {
+                backoffMillis = 0;
+            } else if (ReturnYouTubeDislikeApi.checkIfRateLimitInEffect()) {
+                backoffMillis = backoffMillis == 0 ? MIN_BACKOFF_MILLIS : Math.min(2 * backoffMillis, MAX_BACKOFF_MILLIS);
+                backoffUntil = System.currentTimeMillis() + backoffMillis;
+                // by the time prefetching resumes, these are no longer in view
+                pending.removeAll(queue);
+                queue.clear();
+                LogHelper.info(RYDVotePrefetcher.class, "Rate limited, pausing prefetch for " + backoffMillis / 1000 + " seconds");
+            }
+            scheduleFetchIfNeeded();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package app.revanced.integrations.returnyoutubedislike;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import app.revanced.integrations.returnyoutubedislike.requests.RYDVoteData;
+import app.revanced.integrations.utils.LogHelper;
+
+/**
+ * The votes of the {@link RYDVoteCache}, stored in the app storage so they survive app restarts.
+ * <p>
+ * Fetched votes are appended to the end of the file. A removed video is appended as a record without fetch time.
+ * When the file holds more than twice as many records as there are cached videos, it is rewritten with only the cached ones.
+ * A record cut short by process death is dropped when the file is read.
+ * <p>
+ * Not thread safe. Only used from the single disk thread of the {@link RYDVoteCache}.
+ */
+final class RYDVoteStore {
+    private static final String FILE_NAME = "revanced_ryd_votes.bin";
+    private static final int MAGIC = 0x52594456; // RYDV
+    private static final int VERSION = 1;
+
+    /**
+     * Fetch time of a removed video.
+     */
+    private static final long REMOVED = 0;
+
+    static final class Record {
+        final RYDVoteData voteData;
+        /**
+         * {@link System#currentTimeMillis()} when the votes were fetched.
+         */
+        final long fetchTime;
+
+        Record(RYDVoteData voteData, long fetchTime) {
+            this.voteData = voteData;
+            this.fetchTime = fetchTime;
+        }
+    }
+
+    private final File file;
+    @Nullable
+    private DataOutputStream out;
+    /**
+     * Number of records in the file, including replaced and removed ones.
+     */
+    private int recordCount;
+
+    RYDVoteStore(Context context) {
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * @return The latest record of each video, oldest first.
+     */
+    Map<String, Record> read() {
+        Map<String, Record> records = new LinkedHashMap<>();
+        recordCount = 0;
+        if (!file.exists()) return records;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LogHelper.printException(RYDVoteStore.class, "Unknown vote cache format, starting over");
+                recordCount = Integer.MAX_VALUE;
+                return records;
+            }
+            while (true) {
+                final String videoId;
+                try {
+                    videoId = in.readUTF();
+                } catch (EOFException ex) {
+                    break;
+                }
+                final long fetchTime = in.readLong();
+                final long viewCount = in.readLong();
+                final long likeCount = in.readLong();
+                final long dislikeCount = in.readLong();
+                recordCount++;
+
+                records.remove(videoId); // keep the insertion order of the latest record
+                if (fetchTime != REMOVED) {
+                    records.put(videoId, new Record(new RYDVoteData(videoId, viewCount, likeCount, dislikeCount), fetchTime));
+                }
+            }
+        } catch (EOFException ex) {
+            LogHelper.info(RYDVoteStore.class, "Dropped a partially written vote record");
+            recordCount = Integer.MAX_VALUE; // rewrite the file, without the partial record
+        } catch (IOException | IllegalArgumentException ex) {
+            LogHelper.printException(RYDVoteStore.class, "Failed to read the vote cache", ex);
+            recordCount = Integer.MAX_VALUE;
+        }
+        return records;
+    }
+
+    void append(String videoId, RYDVoteData voteData, long fetchTime) throws IOException {
+        write(getOutput(), videoId, voteData.viewCount, voteData.likeCount, voteData.dislikeCount, fetchTime);
+        out.flush();
+        recordCount++;
+    }
+
+    void appendRemoved(String videoId) throws IOException {
+        write(getOutput(), videoId, 0, 0, 0, REMOVED);
+        out.flush();
+        recordCount++;
+    }
+
+    /**
+     * @param cachedCount Number of videos currently cached.
+     */
+    boolean needsCompaction(int cachedCount) {
+        return recordCount > 2 * Math.max(cachedCount, 16);
+    }
+
+    /**
+     * Replace the file with one record per cached video.
+     */
+    void compact(Map<String, Record> records) throws IOException {
+        close();
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            writeHeader(compacted);
+            for (var entry : records.entrySet()) {
+                final Record record = entry.getValue();
+                write(compacted, entry.getKey(), record.voteData.viewCount, record.voteData.likeCount,
+                        record.voteData.dislikeCount, record.fetchTime);
+            }
+        }
+        if (!temporary.renameTo(file)) throw new IOException("Failed to replace " + file);
+        recordCount = records.size();
+    }
+
+    void delete() {
+        close();
+        if (file.exists() && !file.delete()) LogHelper.printException(RYDVoteStore.class, "Failed to delete " + file);
+        recordCount = 0;
+    }
+
+    private DataOutputStream getOutput() throws IOException {
+        if (out == null) {
+            final boolean isNew = !file.exists() || file.length() == 0;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            if (isNew) writeHeader(out);
+        }
+        return out;
+    }
+
+    private void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ex) {
+            LogHelper.printException(RYDVoteStore.class, "Failed to close the vote cache", ex);
+        }
+        out = null;
+    }
+
+    private static void writeHeader(DataOutputStream stream) throws IOException {
+        stream.writeInt(MAGIC);
+        stream.writeInt(VERSION);
+    }
+
+    private static void write(DataOutputStream stream, String videoId, long viewCount, long likeCount,
+                              long dislikeCount, long fetchTime) throws IOException {
+        stream.writeUTF(videoId);
+        stream.writeLong(fetchTime);
+        stream.writeLong(viewCount);
+        stream.writeLong(likeCount);
+        stream.writeLong(dislikeCount);
+    }
+}
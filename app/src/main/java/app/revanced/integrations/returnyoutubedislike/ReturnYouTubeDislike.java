@@ -19,15 +19,22 @@ import androidx.annotation.GuardedBy;
 import androidx.annotation.Nullable;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
+import app.revanced.integrations.patches.ads.LithoContext;
 import app.revanced.integrations.returnyoutubedislike.requests.RYDVoteData;
 import app.revanced.integrations.returnyoutubedislike.requests.ReturnYouTubeDislikeApi;
 import app.revanced.integrations.settings.SettingsEnum;
@@ -45,6 +52,95 @@ public class ReturnYouTubeDislike {
      */
     private static final long MILLISECONDS_TO_BLOCK_UI_WHILE_WAITING_FOR_FETCH_VOTES_TO_COMPLETE = 4000;
 
+    /**
+     * A like/dislike component created before the votes were fetched, while {@link SettingsEnum#RYD_NON_BLOCKING} is enabled.
+     */
+    private static final class DeferredDislike {
+        /**
+         * Null for Shorts, where the created text can not be updated and only the rebind hook is called.
+         */
+        @Nullable
+        final AtomicReference<Object> textRef;
+        final boolean isSegmentedButton;
+
+        DeferredDislike(@Nullable AtomicReference<Object> textRef, boolean isSegmentedButton) {
+            this.textRef = textRef;
+            this.isSegmentedButton = isSegmentedButton;
+        }
+    }
+
+    /**
+     * A {@link FutureTask} that runs listeners once it is done.
+     */
+    private static class ListenableFutureTask<V> extends FutureTask<V> {
+        /**
+         * Null once done.
+         */
+        @GuardedBy("this")
+        @Nullable
+        private List<Runnable> listeners = new ArrayList<>();
+
+        ListenableFutureTask(Callable<V> callable) {
+            super(callable);
+        }
+
+        /**
+         * Run the listener on the thread that completes this task, or right away if it is already done.
+         */
+        void addListener(Runnable listener) {
+            synchronized (this) {
+                if (listeners != null) {
+                    listeners.add(listener);
+                    return;
+                }
+            }
+            listener.run();
+        }
+
+        @Override
+        protected void done() {
+            final List<Runnable> completed;
+            synchronized (this) {
+                completed = listeners;
+                listeners = null;
+            }
+            for (Runnable listener : completed) listener.run();
+        }
+    }
+
+    /**
+     * Fetches the votes of a video, and caches them before it is done.
+     * Shared by everything that needs the votes of the video while it is being fetched.
+     */
+    private static final class VoteFetch extends ListenableFutureTask<RYDVoteData> {
+        final String videoId;
+
+        VoteFetch(String videoId) {
+            super(() -> {
+                // a fetch of the same video may have completed just before this one was created
+                final RYDVoteCache.Entry cached = RYDVoteCache.getFresh(videoId);
+                if (cached != null) return cached.voteData;
+
+                RYDVoteData votes = ReturnYouTubeDislikeApi.fetchVotes(videoId);
+                if (votes != null) RYDVoteCache.put(videoId, votes);
+                return votes;
+            });
+            this.videoId = videoId;
+        }
+
+        @Override
+        protected void done() {
+            // The votes are cached by now, so later calls find them there.
+            inFlightFetches.remove(videoId, this);
+            super.done();
+        }
+    }
+
+    /**
+     * Videos whose votes are currently fetched.
+     */
+    private static final ConcurrentHashMap<String, VoteFetch> inFlightFetches = new ConcurrentHashMap<>();
+
     /**
      * Used to send votes, one by one, in the same order the user created them
      */
@@ -66,7 +162,25 @@ public class ReturnYouTubeDislike {
      * Stores the results of the vote api fetch, and used as a barrier to wait until fetch completes
      */
     @GuardedBy("videoIdLockObject")
-    private static Future<RYDVoteData> voteFetchFuture;
+    private static ListenableFutureTask<RYDVoteData> voteFetchFuture;
+
+    /**
+     * Components of the current video that are shown without dislikes, until {@link #voteFetchFuture} completes.
+     */
+    @GuardedBy("videoIdLockObject")
+    private static final List<DeferredDislike> deferredDislikes = new ArrayList<>();
+
+    /**
+     * The fetch a listener was added to, to update the {@link #deferredDislikes} once it is done.
+     */
+    @GuardedBy("videoIdLockObject")
+    private static Future<RYDVoteData> deferredFetchFuture;
+
+    /**
+     * Invalidates the like/dislike Litho components, so they are created again with the fetched dislikes.
+     */
+    @Nullable
+    private static volatile Runnable rebindHook;
 
     public enum Vote {
         LIKE(1),
@@ -103,6 +217,9 @@ public class ReturnYouTubeDislike {
                 // if the user re-enables RYD while watching a video
                 currentVideoId = null;
                 voteFetchFuture = null;
+                deferredDislikes.clear();
+                RYDVotePrefetcher.clear();
+                RYDVoteCache.clear();
             }
         }
     }
@@ -113,7 +230,7 @@ public class ReturnYouTubeDislike {
         }
     }
 
-    private static Future<RYDVoteData> getVoteFetchFuture() {
+    private static ListenableFutureTask<RYDVoteData> getVoteFetchFuture() {
         synchronized (videoIdLockObject) {
             return voteFetchFuture;
         }
@@ -125,18 +242,120 @@ public class ReturnYouTubeDislike {
         if (!isEnabled) return;
         try {
             Objects.requireNonNull(videoId);
+            // fetched below, without waiting behind the videos prefetched for the feeds
+            RYDVotePrefetcher.remove(videoId);
 
+            // Votes fetched before are shown right away, so revisiting a video does not wait for the network.
+            // Stale votes are fetched again in the background, and shown the next time.
+            final RYDVoteCache.Entry cached = RYDVoteCache.get(videoId, ReturnYouTubeDislike::refreshVotes);
             synchronized (videoIdLockObject) {
                 currentVideoId = videoId;
-                // no need to wrap the call in a try/catch,
-                // as any exceptions are propagated out in the later Future#Get call
-                voteFetchFuture = ReVancedUtils.submitOnBackgroundThread(() -> ReturnYouTubeDislikeApi.fetchVotes(videoId));
+                deferredDislikes.clear();
+                if (cached != null) {
+                    RYDStatistics.recordCacheLookup(true);
+                    voteFetchFuture = completedFuture(cached.voteData);
+                } else if (!RYDVoteCache.isLoaded()) {
+                    // the cache from the previous app session may still have the votes
+                    voteFetchFuture = new ListenableFutureTask<>(() -> {
+                        RYDVoteCache.awaitLoaded();
+                        RYDVoteCache.Entry loaded = RYDVoteCache.get(videoId, ReturnYouTubeDislike::refreshVotes);
+                        RYDStatistics.recordCacheLookup(loaded != null);
+                        return loaded == null ? fetchVotes(videoId) : loaded.voteData;
+                    });
+                    ReVancedUtils.runOnBackgroundThread(voteFetchFuture);
+                } else {
+                    RYDStatistics.recordCacheLookup(false);
+                    // no need to wrap the call in a try/catch,
+                    // as any exceptions are propagated out in the later Future#Get call
+                    voteFetchFuture = fetchVotesInBackground(videoId);
+                }
             }
         } catch (Exception ex) {
             LogHelper.printException(ReturnYouTubeDislike.class, "Failed to load new video: " + videoId, ex);
         }
     }
 
+    /**
+     * Set by the patch, with a callback that invalidates the like/dislike Litho components.
+     * Called on the main thread, after components created without dislikes were given the fetched ones.
+     */
+    public static void setRebindHook(@Nullable Runnable hook) {
+        rebindHook = hook;
+    }
+
+    /**
+     * @return How long the Litho threads were blocked while waiting for votes, how often the votes were cached,
+     * and how many fetches were shared. Shown in the settings.
+     */
+    public static String getStatisticsReport() {
+        return RYDStatistics.getReport();
+    }
+
+    /**
+     * @return If {@link #prefetchVotes(String)} should be called for the videos shown in the feeds.
+     */
+    public static boolean isPrefetchEnabled() {
+        return isEnabled && RYDVotePrefetcher.isEnabled();
+    }
+
+    /**
+     * Called when a video is shown in a feed, so its votes are cached before it is opened.
+     * Can be called from any thread, and repeatedly for the same video.
+     */
+    public static void prefetchVotes(String videoId) {
+        if (!isEnabled) return;
+        try {
+            RYDVotePrefetcher.offer(Objects.requireNonNull(videoId));
+        } catch (Exception ex) {
+            LogHelper.printException(ReturnYouTubeDislike.class, "Failed to prefetch votes: " + videoId, ex);
+        }
+    }
+
+    /**
+     * @return The fetch of the votes, shared with any other fetch of the same video that is still running.
+     */
+    private static ListenableFutureTask<RYDVoteData> fetchVotesInBackground(String videoId) {
+        VoteFetch fetch = new VoteFetch(videoId);
+        VoteFetch inFlight = inFlightFetches.putIfAbsent(videoId, fetch);
+        if (inFlight != null) {
+            RYDStatistics.recordDuplicateFetch();
+            return inFlight;
+        }
+        ReVancedUtils.runOnBackgroundThread(fetch);
+        return fetch;
+    }
+
+    /**
+     * Fetch and cache the votes, or wait for the fetch of the same video that is still running.
+     * Must call off main thread.
+     */
+    @Nullable
+    static RYDVoteData fetchVotes(String videoId) throws ExecutionException, InterruptedException {
+        VoteFetch fetch = new VoteFetch(videoId);
+        VoteFetch inFlight = inFlightFetches.putIfAbsent(videoId, fetch);
+        if (inFlight != null) {
+            RYDStatistics.recordDuplicateFetch();
+            fetch = inFlight;
+        }
+        // Runs the fetch on this thread, unless it already started.
+        // A fetch still queued on the background pool is never waited for, as this thread may be the one it waits for.
+        fetch.run();
+        return fetch.get();
+    }
+
+    /**
+     * Fetch the stale votes of the video again. They are shown the next time.
+     */
+    private static void refreshVotes(String videoId) {
+        fetchVotesInBackground(videoId);
+    }
+
+    private static ListenableFutureTask<RYDVoteData> completedFuture(RYDVoteData votes) {
+        ListenableFutureTask<RYDVoteData> future = new ListenableFutureTask<>(() -> votes);
+        future.run();
+        return future;
+    }
+
     /**
      * This method is sometimes called on the main thread, but it usually is called _off_ the main thread.
      * <p>
@@ -147,28 +366,31 @@ public class ReturnYouTubeDislike {
         if (!isEnabled) return;
 
         try {
-            String conversionContextString = conversionContext.toString();
+            final String path = conversionContext.toString();
+            // Both the segmented button and the dislike button contain it, most components are rejected without parsing.
+            if (!path.contains("like_button")) return;
+            final LithoContext context = LithoContext.parse(path);
 
             final boolean isSegmentedButton;
-            if (conversionContextString.contains("|segmented_like_dislike_button.eml|") &&
-                    conversionContextString.contains("|TextType|"))
-                isSegmentedButton = true;
-            else if (conversionContextString.contains("|dislike_button.eml|"))
-                isSegmentedButton = false;
-            else
-                return;
+            switch (context.getComponentType()) {
+                case LIKE_DISLIKE_TEXT:
+                    isSegmentedButton = true;
+                    break;
+                case DISLIKE_BUTTON:
+                    isSegmentedButton = false;
+                    break;
+                default:
+                    return;
+            }
 
-            // Have to block the current thread until fetching is done
-            // There's no known way to edit the text after creation yet
-            RYDVoteData votingData;
-            try {
-                Future<RYDVoteData> fetchFuture = getVoteFetchFuture();
-                if (fetchFuture == null) return;
-                votingData = fetchFuture.get(MILLISECONDS_TO_BLOCK_UI_WHILE_WAITING_FOR_FETCH_VOTES_TO_COMPLETE, TimeUnit.MILLISECONDS);
-            } catch (TimeoutException e) {
+            ListenableFutureTask<RYDVoteData> fetchFuture = getVoteFetchFuture();
+            if (fetchFuture == null) return;
+            RYDVoteData votingData = waitForVotes(fetchFuture);
+            if (votingData == null) {
+                // shown without dislikes for now, and updated once the votes are fetched
+                deferUntilFetched(fetchFuture, new DeferredDislike(textRef, isSegmentedButton));
                 return;
             }
-            if (votingData == null) return;
 
             updateDislike(textRef, isSegmentedButton, votingData);
         } catch (Exception ex) {
@@ -181,17 +403,13 @@ public class ReturnYouTubeDislike {
 
         try {
 
-            // Have to block the current thread until fetching is done
-            // There's no known way to edit the text after creation yet
-            RYDVoteData votingData;
-            try {
-                Future<RYDVoteData> fetchFuture = getVoteFetchFuture();
-                if (fetchFuture == null) return textRef;
-                votingData = fetchFuture.get(MILLISECONDS_TO_BLOCK_UI_WHILE_WAITING_FOR_FETCH_VOTES_TO_COMPLETE, TimeUnit.MILLISECONDS);
-            } catch (TimeoutException e) {
+            ListenableFutureTask<RYDVoteData> fetchFuture = getVoteFetchFuture();
+            if (fetchFuture == null) return textRef;
+            RYDVoteData votingData = waitForVotes(fetchFuture);
+            if (votingData == null) {
+                deferUntilFetched(fetchFuture, new DeferredDislike(null, false));
                 return textRef;
             }
-            if (votingData == null) return textRef;
 
             return updateShortsDislike(textRef, votingData);
         } catch (Exception ex) {
@@ -200,6 +418,82 @@ public class ReturnYouTubeDislike {
         }
     }
 
+    /**
+     * Blocks the current thread until the votes are fetched, as the created text can not be edited afterwards.
+     * With {@link SettingsEnum#RYD_NON_BLOCKING}, only waits {@link SettingsEnum#RYD_NON_BLOCKING_MAX_WAIT} milliseconds,
+     * and the component is updated later by {@link #deferUntilFetched(ListenableFutureTask, DeferredDislike)}.
+     *
+     * @return The votes, or null if they could not be fetched in time.
+     */
+    @Nullable
+    private static RYDVoteData waitForVotes(Future<RYDVoteData> fetchFuture) throws Exception {
+        if (fetchFuture.isDone()) {
+            RYDStatistics.recordReady();
+            return fetchFuture.get();
+        }
+
+        final long maxWait = SettingsEnum.RYD_NON_BLOCKING.getBoolean()
+                ? Math.max(0, Math.min(SettingsEnum.RYD_NON_BLOCKING_MAX_WAIT.getInt(), MILLISECONDS_TO_BLOCK_UI_WHILE_WAITING_FOR_FETCH_VOTES_TO_COMPLETE))
+                : MILLISECONDS_TO_BLOCK_UI_WHILE_WAITING_FOR_FETCH_VOTES_TO_COMPLETE;
+        final long start = System.nanoTime();
+        try {
+            RYDVoteData votes = fetchFuture.get(maxWait, TimeUnit.MILLISECONDS);
+            RYDStatistics.recordWait(start, false);
+            return votes;
+        } catch (TimeoutException e) {
+            RYDStatistics.recordWait(start, true);
+            return null;
+        }
+    }
+
+    /**
+     * Update the component once the votes are fetched, and call the {@link #rebindHook} so it is shown.
+     * If the votes were fetched since {@link #waitForVotes(Future)} gave up, that happens right away.
+     * Does nothing unless {@link SettingsEnum#RYD_NON_BLOCKING} is enabled, or if the fetch failed.
+     */
+    private static void deferUntilFetched(ListenableFutureTask<RYDVoteData> fetchFuture, DeferredDislike deferred) {
+        if (!SettingsEnum.RYD_NON_BLOCKING.getBoolean()) return;
+
+        synchronized (videoIdLockObject) {
+            if (fetchFuture != voteFetchFuture) return; // another video was loaded meanwhile
+            deferredDislikes.add(deferred);
+            RYDStatistics.recordDeferred();
+            if (deferredFetchFuture == fetchFuture) return; // the listener is already added
+            deferredFetchFuture = fetchFuture;
+        }
+        fetchFuture.addListener(() -> updateDeferredDislikes(fetchFuture));
+    }
+
+    /**
+     * Called on the thread that completed the fetch.
+     */
+    private static void updateDeferredDislikes(Future<RYDVoteData> fetchFuture) {
+        try {
+            List<DeferredDislike> updates;
+            synchronized (videoIdLockObject) {
+                if (deferredFetchFuture == fetchFuture) deferredFetchFuture = null;
+                if (fetchFuture != voteFetchFuture) return;
+                updates = new ArrayList<>(deferredDislikes);
+                deferredDislikes.clear();
+            }
+            RYDVoteData votes = fetchFuture.get(); // already done
+            if (votes == null || updates.isEmpty()) return;
+
+            for (DeferredDislike update : updates) {
+                if (update.textRef != null) updateDislike(update.textRef, update.isSegmentedButton, votes);
+            }
+            Runnable hook = rebindHook;
+            if (hook != null) {
+                RYDStatistics.recordRebind();
+                ReVancedUtils.runOnMainThread(hook);
+            }
+        } catch (ExecutionException ex) {
+            // the failed fetch was already logged
+        } catch (Exception ex) {
+            LogHelper.printException(ReturnYouTubeDislike.class, "Failed to update deferred dislikes", ex);
+        }
+    }
+
     public static void sendVote(Vote vote) {
         if (!isEnabled) return;
         try {
@@ -213,6 +507,8 @@ public class ReturnYouTubeDislike {
             // Must make a local copy of videoId, since it may change between now and when the vote thread runs
             String videoIdToVoteFor = getCurrentVideoId();
             if (videoIdToVoteFor == null) return;
+            // the cached votes do not include this vote
+            RYDVoteCache.remove(videoIdToVoteFor);
 
             voteSerialExecutor.execute(() -> {
                 // must wrap in try/catch to properly log exceptions
@@ -60,6 +60,23 @@ public final class RYDVoteData {
         dislikePercentage = (dislikeCount == 0 ? 0 : (float)dislikeCount / (likeCount + dislikeCount));
     }
 
+    /**
+     * Restore votes that were fetched before, such as from a cache.
+     *
+     * @throws IllegalArgumentException if the values make no sense (ie: negative values)
+     */
+    public RYDVoteData(String videoId, long viewCount, long likeCount, long dislikeCount) {
+        this.videoId = Objects.requireNonNull(videoId);
+        this.viewCount = viewCount;
+        this.likeCount = likeCount;
+        this.dislikeCount = dislikeCount;
+        if (likeCount < 0 || dislikeCount < 0 || viewCount < 0) {
+            throw new IllegalArgumentException("Unexpected values: " + this);
+        }
+        likePercentage = (likeCount == 0 ? 0 : (float)likeCount / (likeCount + dislikeCount));
+        dislikePercentage = (dislikeCount == 0 ? 0 : (float)dislikeCount / (likeCount + dislikeCount));
+    }
+
     @Override
     public String toString() {
         return "RYDVoteData{"
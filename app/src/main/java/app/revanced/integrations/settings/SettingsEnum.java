@@ -3,6 +3,9 @@ package app.revanced.integrations.settings;
 import android.content.Context;
 import android.util.Log;
 
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import app.revanced.integrations.patches.misc.requests.PlayerRoutes.ClientType;
 import app.revanced.integrations.utils.LogHelper;
 import app.revanced.integrations.utils.ReVancedUtils;
@@ -16,7 +19,14 @@ public enum SettingsEnum {
     ADREMOVER_PAID_CONTENT("revanced_adremover_paid_content", true, ReturnType.BOOLEAN),
     ADREMOVER_SELF_SPONSOR("revanced_adremover_self_sponsor", true, ReturnType.BOOLEAN),
     ADREMOVER_USER_FILTER("revanced_adremover_user_filter", false, ReturnType.BOOLEAN),
-    ADREMOVER_CUSTOM_FILTER("revanced_adremover_custom_strings", "", ReturnType.STRING, true),
+    ADREMOVER_CUSTOM_FILTER("revanced_adremover_custom_strings", "", ReturnType.STRING),
+    ADREMOVER_FILTER_CACHE_SIZE("revanced_adremover_filter_cache_size", 1024, ReturnType.INTEGER),
+    ADREMOVER_FILTER_METRICS("revanced_adremover_filter_metrics", false, ReturnType.BOOLEAN),
+    ADREMOVER_FILTER_CAPTURE("revanced_adremover_filter_capture", false, ReturnType.BOOLEAN),
+    ADREMOVER_FILTER_CAPTURE_SAMPLING("revanced_adremover_filter_capture_sampling", 1, ReturnType.INTEGER),
+    ADREMOVER_FILTER_TRACE("revanced_adremover_filter_trace", false, ReturnType.BOOLEAN),
+    ADREMOVER_FILTER_TRACE_SAMPLING("revanced_adremover_filter_trace_sampling", 1, ReturnType.INTEGER),
+    ADREMOVER_FILTER_TRACE_BLOCKED_ONLY("revanced_adremover_filter_trace_blocked_only", false, ReturnType.BOOLEAN),
 
     // Swipe controls
     ENABLE_SWIPE_AUTO_BRIGHTNESS("revanced_enable_swipe_auto_brightness", false, ReturnType.BOOLEAN),
@@ -53,6 +63,8 @@ public enum SettingsEnum {
     HIDE_EMAIL_ADDRESS("revanced_hide_email_address", true, ReturnType.BOOLEAN, true),
     HIDE_SNACKBAR("revanced_hide_snackbar", false, ReturnType.BOOLEAN),
     ENABLE_PREMIUM_HEADER("revanced_override_premium_header", false, ReturnType.BOOLEAN, true),
+    LITHO_THEME_PALETTE("revanced_litho_theme_palette", "", ReturnType.STRING),
+    LITHO_THEME_REMAP_METRICS("revanced_litho_theme_remap_metrics", false, ReturnType.BOOLEAN),
 
     ADREMOVER_MERCHANDISE("revanced_adremover_merchandise", true, ReturnType.BOOLEAN),
     ADREMOVER_BROWSE_STORE_BUTTON("revanced_adremover_browse_store_button", true, ReturnType.BOOLEAN),
@@ -171,6 +183,10 @@ public enum SettingsEnum {
     RYD_ENABLED("ryd_enabled", true, SharedPrefHelper.SharedPrefNames.RYD, ReturnType.BOOLEAN),
     RYD_SHOW_DISLIKE_PERCENTAGE("ryd_show_dislike_percentage", false, SharedPrefHelper.SharedPrefNames.RYD, ReturnType.BOOLEAN),
     RYD_USE_COMPACT_LAYOUT("ryd_use_compact_layout", true, SharedPrefHelper.SharedPrefNames.RYD, ReturnType.BOOLEAN),
+    RYD_VOTE_CACHE_TTL("ryd_vote_cache_ttl", 300, SharedPrefHelper.SharedPrefNames.RYD, ReturnType.INTEGER),
+    RYD_PREFETCH_VOTES("ryd_prefetch_votes", false, SharedPrefHelper.SharedPrefNames.RYD, ReturnType.BOOLEAN),
+    RYD_NON_BLOCKING("ryd_non_blocking", false, SharedPrefHelper.SharedPrefNames.RYD, ReturnType.BOOLEAN),
+    RYD_NON_BLOCKING_MAX_WAIT("ryd_non_blocking_max_wait", 50, SharedPrefHelper.SharedPrefNames.RYD, ReturnType.INTEGER),
 
     //SponsorBlock Settings
     SB_ENABLED("sb-enabled", true, SharedPrefHelper.SharedPrefNames.SPONSOR_BLOCK, ReturnType.BOOLEAN),
@@ -201,6 +217,13 @@ public enum SettingsEnum {
 
     private volatile Object value;
 
+    /**
+     * Incremented every time any setting changes its value.
+     * Used to lazily rebuild data that is derived from settings.
+     * Must be declared before the static initializer that loads the settings.
+     */
+    private static final AtomicInteger generation = new AtomicInteger();
+
     SettingsEnum(String path, Object defaultValue, ReturnType returnType) {
         this.path = path;
         this.defaultValue = defaultValue;
@@ -285,8 +308,17 @@ public enum SettingsEnum {
         }
     }
 
+    /**
+     * @return A number that changes whenever any setting value changes.
+     */
+    public static int getGeneration() {
+        return generation.get();
+    }
+
     public void setValue(Object newValue) {
+        final boolean changed = !Objects.equals(this.value, newValue);
         this.value = newValue;
+        if (changed) generation.incrementAndGet();
     }
 
     public void saveValue(Object newValue) {
@@ -299,7 +331,7 @@ public enum SettingsEnum {
             } else {
                 SharedPrefHelper.saveString(context, sharedPref, path, newValue + "");
             }
-            this.value = newValue;
+            setValue(newValue);
         } else {
             LogHelper.printException(SettingsEnum.class, "Context on SaveValue is null!");
         }
@@ -18,15 +18,23 @@ import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceScreen;
 import android.preference.SwitchPreference;
+import android.widget.Toast;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 
 import app.revanced.integrations.BuildConfig;
+import app.revanced.integrations.patches.ads.FilterMetrics;
+import app.revanced.integrations.patches.ads.FilterTrace;
+import app.revanced.integrations.patches.ads.LithoCapture;
+import app.revanced.integrations.patches.ads.RulePackLoader;
 import app.revanced.integrations.patches.button.AutoRepeat;
 import app.revanced.integrations.patches.button.Copy;
 import app.revanced.integrations.patches.button.CopyWithTimeStamp;
 import app.revanced.integrations.patches.button.Download;
+import app.revanced.integrations.patches.utils.LithoThemePatch;
 import app.revanced.integrations.patches.video.VideoQualityPatch;
 import app.revanced.integrations.settings.SettingsEnum;
 import app.revanced.integrations.utils.LogHelper;
@@ -68,6 +76,8 @@ public class ReVancedSettingsFragment extends PreferenceFragment {
                     AutoRepeat.changeSelected(SettingsEnum.ENABLE_ALWAYS_AUTO_REPEAT.getBoolean(), true);
                 } else if (setting.equals(SettingsEnum.OVERLAY_BUTTON_DOWNLOADS)) {
                     Download.refreshVisibility();
+                } else if (setting.equals(SettingsEnum.ADREMOVER_FILTER_CAPTURE)) {
+                    if (!setting.getBoolean()) LithoCapture.close();
                 }
 
             } else if (pref instanceof EditTextPreference) {
@@ -163,6 +173,7 @@ public class ReVancedSettingsFragment extends PreferenceFragment {
             setVideoQuality(false);
 
             setPatchesInfomation();
+            setFilterMetricsPreferences();
             setSpoofAppVersionInfo();
 
             for (int i = 0; i < DownloaderNameList.length ; i++) {
@@ -274,6 +285,139 @@ public class ReVancedSettingsFragment extends PreferenceFragment {
         integration.setSummary(BuildConfig.VERSION_NAME);
     }
 
+    private void setFilterMetricsPreferences() {
+        Activity activity = ReVancedSettingsFragment.this.getActivity();
+        PreferenceScreen metricsScreen = getPreferenceManager().createPreferenceScreen(activity);
+        metricsScreen.setTitle(str("revanced_adremover_filter_metrics_screen_title"));
+        metricsScreen.setSummary(str("revanced_adremover_filter_metrics_screen_summary"));
+        this.miscPreferenceScreen.addPreference(metricsScreen);
+
+        // Persisted under the setting key, so the shared preferences listener updates the setting.
+        SwitchPreference enabledPreference = new SwitchPreference(activity);
+        enabledPreference.setKey(SettingsEnum.ADREMOVER_FILTER_METRICS.getPath());
+        enabledPreference.setDefaultValue(SettingsEnum.ADREMOVER_FILTER_METRICS.getDefaultValue());
+        enabledPreference.setTitle(str("revanced_adremover_filter_metrics_title"));
+        enabledPreference.setSummary(str("revanced_adremover_filter_metrics_summary"));
+        metricsScreen.addPreference(enabledPreference);
+        enabledPreference.setChecked(SettingsEnum.ADREMOVER_FILTER_METRICS.getBoolean());
+
+        Preference reportPreference = new Preference(activity);
+        reportPreference.setTitle(str("revanced_adremover_filter_metrics_report_title"));
+        reportPreference.setSelectable(false);
+        metricsScreen.addPreference(reportPreference);
+
+        Preference resetPreference = new Preference(activity);
+        resetPreference.setTitle(str("revanced_adremover_filter_metrics_reset_title"));
+        resetPreference.setOnPreferenceClickListener(pref -> {
+            FilterMetrics.reset();
+            reportPreference.setSummary(FilterMetrics.report());
+            return false;
+        });
+        metricsScreen.addPreference(resetPreference);
+
+        Preference dumpPreference = new Preference(activity);
+        dumpPreference.setTitle(str("revanced_adremover_filter_metrics_dump_title"));
+        dumpPreference.setOnPreferenceClickListener(pref -> {
+            try {
+                File file = FilterMetrics.dump(pref.getContext());
+                Toast.makeText(pref.getContext(), file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+            } catch (IOException ex) {
+                LogHelper.printException(ReVancedSettingsFragment.class, "Failed to dump filter metrics", ex);
+            }
+            return false;
+        });
+        metricsScreen.addPreference(dumpPreference);
+
+        SwitchPreference capturePreference = new SwitchPreference(activity);
+        capturePreference.setKey(SettingsEnum.ADREMOVER_FILTER_CAPTURE.getPath());
+        capturePreference.setDefaultValue(SettingsEnum.ADREMOVER_FILTER_CAPTURE.getDefaultValue());
+        capturePreference.setTitle(str("revanced_adremover_filter_capture_title"));
+        capturePreference.setSummary(str("revanced_adremover_filter_capture_summary"));
+        metricsScreen.addPreference(capturePreference);
+        capturePreference.setChecked(SettingsEnum.ADREMOVER_FILTER_CAPTURE.getBoolean());
+
+        EditTextPreference samplingPreference = new EditTextPreference(activity);
+        samplingPreference.setKey(SettingsEnum.ADREMOVER_FILTER_CAPTURE_SAMPLING.getPath());
+        samplingPreference.setDefaultValue(SettingsEnum.ADREMOVER_FILTER_CAPTURE_SAMPLING.getDefaultValue() + "");
+        samplingPreference.setTitle(str("revanced_adremover_filter_capture_sampling_title"));
+        metricsScreen.addPreference(samplingPreference);
+        samplingPreference.setSummary(SettingsEnum.ADREMOVER_FILTER_CAPTURE_SAMPLING.getInt() + "");
+
+        SwitchPreference tracePreference = new SwitchPreference(activity);
+        tracePreference.setKey(SettingsEnum.ADREMOVER_FILTER_TRACE.getPath());
+        tracePreference.setDefaultValue(SettingsEnum.ADREMOVER_FILTER_TRACE.getDefaultValue());
+        tracePreference.setTitle(str("revanced_adremover_filter_trace_title"));
+        tracePreference.setSummary(str("revanced_adremover_filter_trace_summary"));
+        metricsScreen.addPreference(tracePreference);
+        tracePreference.setChecked(SettingsEnum.ADREMOVER_FILTER_TRACE.getBoolean());
+
+        SwitchPreference traceBlockedOnlyPreference = new SwitchPreference(activity);
+        traceBlockedOnlyPreference.setKey(SettingsEnum.ADREMOVER_FILTER_TRACE_BLOCKED_ONLY.getPath());
+        traceBlockedOnlyPreference.setDefaultValue(SettingsEnum.ADREMOVER_FILTER_TRACE_BLOCKED_ONLY.getDefaultValue());
+        traceBlockedOnlyPreference.setTitle(str("revanced_adremover_filter_trace_blocked_only_title"));
+        metricsScreen.addPreference(traceBlockedOnlyPreference);
+        traceBlockedOnlyPreference.setChecked(SettingsEnum.ADREMOVER_FILTER_TRACE_BLOCKED_ONLY.getBoolean());
+
+        EditTextPreference traceSamplingPreference = new EditTextPreference(activity);
+        traceSamplingPreference.setKey(SettingsEnum.ADREMOVER_FILTER_TRACE_SAMPLING.getPath());
+        traceSamplingPreference.setDefaultValue(SettingsEnum.ADREMOVER_FILTER_TRACE_SAMPLING.getDefaultValue() + "");
+        traceSamplingPreference.setTitle(str("revanced_adremover_filter_trace_sampling_title"));
+        metricsScreen.addPreference(traceSamplingPreference);
+        traceSamplingPreference.setSummary(SettingsEnum.ADREMOVER_FILTER_TRACE_SAMPLING.getInt() + "");
+
+        Preference traceDumpPreference = new Preference(activity);
+        traceDumpPreference.setTitle(str("revanced_adremover_filter_trace_dump_title"));
+        traceDumpPreference.setOnPreferenceClickListener(pref -> {
+            try {
+                File file = FilterTrace.dump(pref.getContext());
+                Toast.makeText(pref.getContext(), file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+            } catch (IOException ex) {
+                LogHelper.printException(ReVancedSettingsFragment.class, "Failed to dump filter trace", ex);
+            }
+            return false;
+        });
+        metricsScreen.addPreference(traceDumpPreference);
+
+        Preference traceClearPreference = new Preference(activity);
+        traceClearPreference.setTitle(str("revanced_adremover_filter_trace_clear_title"));
+        traceClearPreference.setOnPreferenceClickListener(pref -> {
+            FilterTrace.clear();
+            return false;
+        });
+        metricsScreen.addPreference(traceClearPreference);
+
+        // Loads in the background. The result is shown the next time the screen is opened.
+        Preference rulePackPreference = new Preference(activity);
+        rulePackPreference.setTitle(str("revanced_adremover_rule_pack_reload_title"));
+        rulePackPreference.setOnPreferenceClickListener(pref -> {
+            RulePackLoader.reload();
+            Toast.makeText(pref.getContext(), str("revanced_adremover_rule_pack_reloading"), Toast.LENGTH_SHORT).show();
+            return false;
+        });
+        metricsScreen.addPreference(rulePackPreference);
+
+        SwitchPreference remapMetricsPreference = new SwitchPreference(activity);
+        remapMetricsPreference.setKey(SettingsEnum.LITHO_THEME_REMAP_METRICS.getPath());
+        remapMetricsPreference.setDefaultValue(SettingsEnum.LITHO_THEME_REMAP_METRICS.getDefaultValue());
+        remapMetricsPreference.setTitle(str("revanced_litho_theme_remap_metrics_title"));
+        remapMetricsPreference.setSummary(str("revanced_litho_theme_remap_metrics_summary"));
+        metricsScreen.addPreference(remapMetricsPreference);
+        remapMetricsPreference.setChecked(SettingsEnum.LITHO_THEME_REMAP_METRICS.getBoolean());
+
+        Preference remapReportPreference = new Preference(activity);
+        remapReportPreference.setTitle(str("revanced_litho_theme_remap_report_title"));
+        remapReportPreference.setSelectable(false);
+        metricsScreen.addPreference(remapReportPreference);
+
+        // Refresh the reports every time the screen is opened.
+        metricsScreen.setOnPreferenceClickListener(pref -> {
+            reportPreference.setSummary(FilterMetrics.report());
+            rulePackPreference.setSummary(RulePackLoader.getStatus());
+            remapReportPreference.setSummary(LithoThemePatch.getRemapReport());
+            return false;
+        });
+    }
+
     private void setDownloaderPreferenceDialog(int index) {
         SettingsEnum downloaderPackageName = SettingsEnum.DOWNLOADER_PACKAGE_NAME;
 
@@ -7,6 +7,8 @@ import android.app.AlertDialog;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.text.InputType;
+import android.preference.EditTextPreference;
 import android.preference.Preference;
 import android.preference.PreferenceCategory;
 import android.preference.PreferenceFragment;
@@ -34,6 +36,26 @@ public class ReturnYouTubeDislikeSettingsFragment extends PreferenceFragment {
      */
     private SwitchPreference compactLayoutPreference;
 
+    /**
+     * How long fetched votes are reused
+     */
+    private EditTextPreference voteCacheTtlPreference;
+
+    /**
+     * If votes of videos in the feeds are fetched before the videos are opened
+     */
+    private SwitchPreference prefetchPreference;
+
+    /**
+     * If the like/dislike components are created without waiting for the votes
+     */
+    private SwitchPreference nonBlockingPreference;
+
+    /**
+     * How long to wait for the votes, if not blocking
+     */
+    private EditTextPreference nonBlockingMaxWaitPreference;
+
     private void updateUIState() {
         final boolean rydIsEnabled = SettingsEnum.RYD_ENABLED.getBoolean();
 
@@ -50,6 +72,23 @@ public class ReturnYouTubeDislikeSettingsFragment extends PreferenceFragment {
                 ? str("revanced_ryd_compact_layout_summary_on")
                 : str("revanced_ryd_compact_layout_summary_off"));
         compactLayoutPreference.setEnabled(rydIsEnabled);
+
+        voteCacheTtlPreference.setSummary(String.valueOf(SettingsEnum.RYD_VOTE_CACHE_TTL.getInt()));
+        voteCacheTtlPreference.setEnabled(rydIsEnabled);
+
+        prefetchPreference.setSummary(SettingsEnum.RYD_PREFETCH_VOTES.getBoolean()
+                ? str("revanced_ryd_prefetch_votes_summary_on")
+                : str("revanced_ryd_prefetch_votes_summary_off"));
+        prefetchPreference.setEnabled(rydIsEnabled && SettingsEnum.RYD_VOTE_CACHE_TTL.getInt() > 0);
+
+        final boolean nonBlocking = SettingsEnum.RYD_NON_BLOCKING.getBoolean();
+        nonBlockingPreference.setSummary(nonBlocking
+                ? str("revanced_ryd_non_blocking_summary_on")
+                : str("revanced_ryd_non_blocking_summary_off"));
+        nonBlockingPreference.setEnabled(rydIsEnabled);
+
+        nonBlockingMaxWaitPreference.setSummary(String.valueOf(SettingsEnum.RYD_NON_BLOCKING_MAX_WAIT.getInt()));
+        nonBlockingMaxWaitPreference.setEnabled(rydIsEnabled && nonBlocking);
     }
 
     @Override
@@ -96,9 +135,77 @@ public class ReturnYouTubeDislikeSettingsFragment extends PreferenceFragment {
         });
         preferenceScreen.addPreference(compactLayoutPreference);
 
+        voteCacheTtlPreference = new EditTextPreference(context);
+        voteCacheTtlPreference.getEditText().setInputType(InputType.TYPE_CLASS_NUMBER);
+        voteCacheTtlPreference.setTitle(str("revanced_ryd_vote_cache_ttl_title"));
+        voteCacheTtlPreference.setText(String.valueOf(SettingsEnum.RYD_VOTE_CACHE_TTL.getInt()));
+        voteCacheTtlPreference.setOnPreferenceChangeListener((pref, newValue) -> {
+            try {
+                SettingsEnum.RYD_VOTE_CACHE_TTL.saveValue(Integer.valueOf(newValue.toString()));
+            } catch (NumberFormatException ex) {
+                return false;
+            }
+
+            updateUIState();
+            return true;
+        });
+        preferenceScreen.addPreference(voteCacheTtlPreference);
+
+        prefetchPreference = new SwitchPreference(context);
+        prefetchPreference.setChecked(SettingsEnum.RYD_PREFETCH_VOTES.getBoolean());
+        prefetchPreference.setTitle(str("revanced_ryd_prefetch_votes_title"));
+        prefetchPreference.setOnPreferenceChangeListener((pref, newValue) -> {
+            SettingsEnum.RYD_PREFETCH_VOTES.saveValue(newValue);
+
+            updateUIState();
+            return true;
+        });
+        preferenceScreen.addPreference(prefetchPreference);
+
+        nonBlockingPreference = new SwitchPreference(context);
+        nonBlockingPreference.setChecked(SettingsEnum.RYD_NON_BLOCKING.getBoolean());
+        nonBlockingPreference.setTitle(str("revanced_ryd_non_blocking_title"));
+        nonBlockingPreference.setOnPreferenceChangeListener((pref, newValue) -> {
+            SettingsEnum.RYD_NON_BLOCKING.saveValue(newValue);
+
+            updateUIState();
+            return true;
+        });
+        preferenceScreen.addPreference(nonBlockingPreference);
+
+        nonBlockingMaxWaitPreference = new EditTextPreference(context);
+        nonBlockingMaxWaitPreference.getEditText().setInputType(InputType.TYPE_CLASS_NUMBER);
+        nonBlockingMaxWaitPreference.setTitle(str("revanced_ryd_non_blocking_max_wait_title"));
+        nonBlockingMaxWaitPreference.setText(String.valueOf(SettingsEnum.RYD_NON_BLOCKING_MAX_WAIT.getInt()));
+        nonBlockingMaxWaitPreference.setOnPreferenceChangeListener((pref, newValue) -> {
+            try {
+                SettingsEnum.RYD_NON_BLOCKING_MAX_WAIT.saveValue(Integer.valueOf(newValue.toString()));
+            } catch (NumberFormatException ex) {
+                return false;
+            }
+
+            updateUIState();
+            return true;
+        });
+        preferenceScreen.addPreference(nonBlockingMaxWaitPreference);
+
         updateUIState();
 
 
+        // Statistics category
+
+        PreferenceCategory statisticsCategory = new PreferenceCategory(context);
+        statisticsCategory.setTitle(str("revanced_ryd_statistics_category"));
+        preferenceScreen.addPreference(statisticsCategory);
+
+        // Read when the settings are opened
+        Preference statisticsPreference = new Preference(context);
+        statisticsPreference.setTitle(str("revanced_ryd_statistics_title"));
+        statisticsPreference.setSummary(ReturnYouTubeDislike.getStatisticsReport());
+        statisticsPreference.setSelectable(false);
+        preferenceScreen.addPreference(statisticsPreference);
+
+
         // About category
 
         PreferenceCategory aboutCategory = new PreferenceCategory(context);
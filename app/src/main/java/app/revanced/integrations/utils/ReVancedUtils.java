@@ -5,6 +5,12 @@ import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.Bidi;
 import java.util.Locale;
 import java.util.concurrent.Callable;
@@ -67,6 +73,58 @@ public class ReVancedUtils {
         return false;
     }
 
+    /**
+     * Same as {@link #containsAny(String, String...)}, but does not require copying the value into a String.
+     */
+    public static boolean containsAny(final CharSequence value, final String... targets) {
+        if (value instanceof String) return containsAny((String) value, targets);
+
+        for (String string : targets)
+            if (!string.isEmpty() && indexOf(value, string) >= 0) return true;
+        return false;
+    }
+
+    /**
+     * @return The first index of the target in the value, or -1 if it is not found.
+     */
+    public static int indexOf(final CharSequence value, final String target) {
+        final int last = value.length() - target.length();
+        if (target.isEmpty()) return 0;
+
+        final char first = target.charAt(0);
+        for (int i = 0; i <= last; i++) {
+            if (value.charAt(i) != first) continue;
+
+            int j = 1;
+            while (j < target.length() && value.charAt(i + j) == target.charAt(j)) j++;
+            if (j == target.length()) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The file in the app specific directory of the external storage,
+     * or of the internal storage if there is no external storage.
+     */
+    public static File getAppSpecificFile(Context context, String name) {
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) directory = context.getFilesDir();
+        return new File(directory, name);
+    }
+
+    /**
+     * Write the text to {@link #getAppSpecificFile(Context, String)}, replacing the file.
+     *
+     * @return The written file.
+     */
+    public static File writeAppSpecificFile(Context context, String name, String text) throws IOException {
+        File file = getAppSpecificFile(context, name);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+        return file;
+    }
+
     private static Boolean isRightToLeftTextLayout;
     /**
      * If the device language uses right to left text layout (hebrew, arabic, etc)
@@ -0,0 +1,39 @@
+package app.revanced.integrations.patches.ads;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class CustomFilterTest {
+    @Test
+    public void commasInsideRegexDoNotSeparateEntries() {
+        assertEquals(Arrays.asList("/ad_{1,3}x/", " shorts_shelf", " *_promo*"),
+                CustomFilter.split("/ad_{1,3}x/, shorts_shelf, *_promo*"));
+
+        CustomFilter filter = CustomFilter.parse("/ad_{1,3}x/, shorts_shelf");
+        assertArrayEquals(new String[]{"shorts_shelf"}, filter.substrings);
+        assertTrue(filter.matchesPattern("video.eml|ad_x.eml|"));
+        assertFalse(filter.matchesPattern("video.eml|ad_.eml|"));
+    }
+
+    @Test
+    public void unclosedRegexIsText() {
+        CustomFilter filter = CustomFilter.parse("/ad_, banner");
+        assertArrayEquals(new String[]{"/ad_", "banner"}, filter.substrings);
+        assertFalse(filter.hasPatterns());
+    }
+
+    @Test
+    public void backreferencesAreRejected() {
+        CustomFilter filter = CustomFilter.parse("/(x)y/, /(ad)_\\1/, /\\Q\\1\\E/");
+        assertTrue(filter.matchesPattern("xy"));
+        assertFalse(filter.matchesPattern("ad_ad"));
+        // Quoted, so not a backreference.
+        assertTrue(filter.matchesPattern("a\\1b"));
+    }
+}
@@ -0,0 +1,29 @@
+package app.revanced.integrations.patches.ads;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LithoContextTest {
+    @Test
+    public void equalPathKeepsItsSegments() {
+        StringBuilder path = new StringBuilder("video_action_bar.eml|segmented_like_dislike_button.eml|TextType|");
+        assertEquals(LithoContext.ComponentType.LIKE_DISLIKE_TEXT, LithoContext.parse(path).getComponentType());
+
+        // Another object with the same path, as passed by the next hook of the component.
+        LithoContext context = LithoContext.parse(path.toString());
+        assertEquals(LithoContext.ComponentType.LIKE_DISLIKE_TEXT, context.getComponentType());
+        assertEquals(path.toString(), context.getPath().toString());
+    }
+
+    @Test
+    public void changedPathIsParsedAgain() {
+        StringBuilder path = new StringBuilder("video_action_bar.eml|dislike_button.eml|");
+        assertEquals(LithoContext.ComponentType.DISLIKE_BUTTON, LithoContext.parse(path).getComponentType());
+
+        // Same length, and the builder is reused by the hook.
+        path.setLength(0);
+        path.append("video_action_bar.eml|comment_thread.eml|");
+        assertEquals(LithoContext.ComponentType.COMMENT, LithoContext.parse(path).getComponentType());
+    }
+}
@@ -0,0 +1,108 @@
+package app.revanced.integrations.patches.ads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import app.revanced.integrations.settings.SettingsEnum;
+
+/**
+ * Runs the filters on the JVM, with the settings at their defaults.
+ */
+public class LithoFilterPatchTest {
+    private static final int ITERATIONS = 10_000;
+
+    /**
+     * Paths that no filter blocks, so every filter evaluates its rules for them.
+     * Rules match the last two, but the ignore list keeps them.
+     */
+    private static final String[] UNBLOCKED_PATHS = {
+            "home_video_with_context.eml|ContainerType|ContainerType|video_lockup_with_attachment.eml|",
+            "compact_video.eml|ContainerType|ContainerType|inline_player_overlay.eml|",
+            "video_action_bar.eml|CellType|ContainerType|video_action_button.eml|",
+            "comment_thread.eml|ContainerType|comment.eml|",
+            "home_video_with_context.eml|ContainerType|ads_video.eml|",
+            "comment_thread.eml|ContainerType|image_shelf.eml|",
+    };
+
+    @BeforeClass
+    public static void warmUp() {
+        // Without a context the settings are not loaded, so start from their defaults.
+        for (SettingsEnum setting : SettingsEnum.values()) {
+            if (setting.isNull()) setting.setValue(setting.getDefaultValue());
+        }
+        SettingsEnum.ADREMOVER_FILTER_CAPTURE.setValue(false);
+        LithoFilterPatch.warmUpNow();
+    }
+
+    /**
+     * Evaluating the rules of a component on a Litho thread should not allocate, once the matchers are compiled.
+     * The verdict cache and the prefilter are disabled, so every component goes through all the rules.
+     */
+    @Test
+    public void filterComponentDoesNotAllocate() {
+        final int cacheSize = SettingsEnum.ADREMOVER_FILTER_CACHE_SIZE.getInt();
+        SettingsEnum.ADREMOVER_FILTER_CACHE_SIZE.setValue(0);
+        LithoFilterPatch.prefilterEnabled = false;
+        try {
+            StringBuilder[] paths = new StringBuilder[UNBLOCKED_PATHS.length];
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = new StringBuilder(UNBLOCKED_PATHS[i]);
+                assertFalse(UNBLOCKED_PATHS[i], LithoFilterPatch.filter(paths[i], null));
+            }
+            filterAll(paths, ITERATIONS);
+
+            final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            final long threadId = Thread.currentThread().getId();
+            final long before = bean.getThreadAllocatedBytes(threadId);
+            filterAll(paths, ITERATIONS);
+            final long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+
+            assertEquals("Bytes allocated by " + (long) ITERATIONS * paths.length + " components", 0, allocated);
+        } finally {
+            SettingsEnum.ADREMOVER_FILTER_CACHE_SIZE.setValue(cacheSize);
+            LithoFilterPatch.prefilterEnabled = true;
+        }
+    }
+
+    /**
+     * Only component names of identifier rules belong in the {@link SegmentDictionary}, which never shrinks.
+     */
+    @Test
+    public void pathPatternsAreNotInterned() {
+        // A path rule match makes the path registers collect their enabled rules.
+        LithoFilterPatch.filter(new StringBuilder("channel_guidelines_entry_banner.eml|"), null);
+        LithoFilterPatch.filter(new StringBuilder("video_with_context.eml|ContainerType|ads_video.eml|"), null);
+
+        final String pattern = "|ads_";
+        assertEquals(SegmentDictionary.UNKNOWN, SegmentDictionary.lookup(pattern, 0, pattern.length()));
+    }
+
+    @Test
+    public void identifierRulesMatchComponentNamesExactly() {
+        LithoBlockRegister register = new LithoBlockRegister();
+        register.registerAll(
+                new BlockRule(SettingsEnum.ADREMOVER_GENERAL_ADS, "cell_divider"),
+                new BlockRule(SettingsEnum.ADREMOVER_GENERAL_ADS, "_ad.")
+        );
+
+        assertTrue(register.containsIdentifier("cell_divider.eml"));
+        assertFalse(register.containsIdentifier("cell_divider_header.eml"));
+        // Not a component name, so still matched anywhere.
+        assertTrue(register.containsIdentifier("carousel_ad.eml"));
+        assertFalse(register.containsIdentifier("compact_video.eml"));
+    }
+
+    private static void filterAll(StringBuilder[] paths, int iterations) {
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (StringBuilder path : paths) {
+                LithoFilterPatch.filter(path, null);
+            }
+        }
+    }
+}
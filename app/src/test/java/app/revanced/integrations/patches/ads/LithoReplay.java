@@ -0,0 +1,305 @@
+package app.revanced.integrations.patches.ads;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import app.revanced.integrations.patches.ads.LithoCapture.Record;
+import app.revanced.integrations.settings.SettingsEnum;
+import app.revanced.integrations.shared.PlayerType;
+
+/**
+ * Replays a {@link LithoCapture} through the filters on the JVM.
+ * <p>
+ * Runs on the unit test classpath, whose android.jar returns default values:
+ * <pre>
+ * ./gradlew :app:replayLithoCapture --args="[--iterations n] [--set setting_path=value]... [--surface name] [--verdicts file] [--compare-prefilter] capture"
+ * ./gradlew :app:replayLithoCapture --args="--diff verdicts_a verdicts_b"
+ * </pre>
+ * A capture does not record the {@link FilterSurface}, so every rule applies unless {@code --surface} picks one.
+ * A replay reports throughput and allocation rate.
+ * With {@code --compare-prefilter} the capture is benchmarked without and with the {@link TrigramFilter},
+ * followed by its false positive rate. Disable the verdict cache to measure the paths that are actually scanned.
+ * To compare two implementations, replay the same capture with both builds and write their verdicts,
+ * then diff the two verdict files. The diff lists changed verdicts and, per rule, the components it stopped or started matching.
+ */
+public final class LithoReplay {
+    private static final int MAX_LISTED_DIFFS = 20;
+
+    private LithoReplay() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("--diff")) {
+            diff(new File(args[1]), new File(args[2]));
+            return;
+        }
+
+        int iterations = 5;
+        File verdicts = null;
+        File capture = null;
+        boolean comparePrefilter = false;
+        initializeSettings();
+        LithoFilterPatch.warmUpNow();
+        FilterSurface surface = FilterSurface.UNKNOWN;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--set":
+                    set(args[++i]);
+                    break;
+                case "--surface":
+                    surface = FilterSurface.valueOf(args[++i].toUpperCase(Locale.US));
+                    break;
+                case "--verdicts":
+                    verdicts = new File(args[++i]);
+                    break;
+                case "--compare-prefilter":
+                    comparePrefilter = true;
+                    break;
+                default:
+                    capture = new File(args[i]);
+                    break;
+            }
+        }
+        if (capture == null) {
+            System.err.println("Usage: LithoReplay [--iterations n] [--set setting_path=value]... [--surface name] [--verdicts file] [--compare-prefilter] capture");
+            System.err.println("       LithoReplay --diff verdicts_a verdicts_b");
+            System.exit(2);
+        }
+
+        // Before the first component, so the surface is not settling after a change.
+        PlayerType.setCurrent(playerTypeOf(surface));
+
+        List<Record> records = read(capture);
+        System.out.printf(Locale.US, "%d records%n", records.size());
+        if (verdicts != null) writeVerdicts(records, verdicts);
+        if (!comparePrefilter) {
+            benchmark(records, iterations);
+            return;
+        }
+
+        System.out.println("Without prefilter");
+        LithoFilterPatch.prefilterEnabled = false;
+        benchmark(records, iterations);
+
+        System.out.println("With prefilter");
+        LithoFilterPatch.prefilterEnabled = true;
+        benchmark(records, iterations);
+
+        FilterMetrics.reset();
+        SettingsEnum.ADREMOVER_FILTER_METRICS.setValue(true);
+        benchmark(records, 0);
+        SettingsEnum.ADREMOVER_FILTER_METRICS.setValue(false);
+        for (String line : FilterMetrics.report().split("\n")) {
+            if (line.startsWith("Prefilter")) System.out.println(line);
+        }
+    }
+
+    /**
+     * Without a context the settings are not loaded, so start from their defaults.
+     * Capturing is disabled, so the replay does not record itself.
+     */
+    private static void initializeSettings() {
+        for (SettingsEnum setting : SettingsEnum.values()) {
+            if (setting.isNull()) setting.setValue(setting.getDefaultValue());
+        }
+        SettingsEnum.ADREMOVER_FILTER_CAPTURE.setValue(false);
+    }
+
+    private static PlayerType playerTypeOf(FilterSurface surface) {
+        switch (surface) {
+            case BROWSE:
+                return PlayerType.NONE;
+            case WATCH:
+                return PlayerType.WATCH_WHILE_MAXIMIZED;
+            default:
+                return PlayerType.WATCH_WHILE_MINIMIZED;
+        }
+    }
+
+    private static void set(String assignment) {
+        final int separator = assignment.indexOf('=');
+        final String path = assignment.substring(0, separator);
+        final String value = assignment.substring(separator + 1);
+
+        for (SettingsEnum setting : SettingsEnum.values()) {
+            if (!setting.getPath().equals(path)) continue;
+
+            switch (setting.getReturnType()) {
+                case BOOLEAN:
+                    setting.setValue(Boolean.parseBoolean(value));
+                    break;
+                case INTEGER:
+                    setting.setValue(Integer.parseInt(value));
+                    break;
+                case LONG:
+                    setting.setValue(Long.parseLong(value));
+                    break;
+                case FLOAT:
+                    setting.setValue(Float.parseFloat(value));
+                    break;
+                default:
+                    setting.setValue(value);
+                    break;
+            }
+            return;
+        }
+        throw new IllegalArgumentException("Unknown setting: " + path);
+    }
+
+    private static List<Record> read(File capture) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (LithoCapture.Reader reader = new LithoCapture.Reader(capture)) {
+            for (Record record = reader.next(); record != null; record = reader.next()) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static boolean filter(Record record, StringBuilder path, ByteBuffer buffer) {
+        if (record.source == LithoCapture.SOURCE_LITHO_FILTER) {
+            return LithoFilterPatch.filter(path, record.identifier);
+        }
+        return ExtendedLithoFilterPatch.InflatedLithoView(record.path, buffer);
+    }
+
+    private static void benchmark(List<Record> records, int iterations) {
+        final int size = records.size();
+        StringBuilder[] paths = new StringBuilder[size];
+        ByteBuffer[] buffers = new ByteBuffer[size];
+        for (int i = 0; i < size; i++) {
+            Record record = records.get(i);
+            paths[i] = new StringBuilder(record.path);
+            buffers[i] = record.buffer == null ? null : ByteBuffer.wrap(record.buffer);
+        }
+
+        // The first pass fills the verdict cache and is reported separately.
+        for (int iteration = 0; iteration <= iterations; iteration++) {
+            final long allocatedBefore = allocatedBytes();
+            final long start = System.nanoTime();
+            int blocked = 0;
+            for (int i = 0; i < size; i++) {
+                if (filter(records.get(i), paths[i], buffers[i])) blocked++;
+            }
+            final long nanos = Math.max(1, System.nanoTime() - start);
+            final long allocated = allocatedBytes() - allocatedBefore;
+
+            System.out.printf(Locale.US, "%s: %.0f components/s, %.1f ns/component, %s, %d blocked%n",
+                    iteration == 0 ? "cold" : "pass " + iteration,
+                    size * 1e9 / nanos,
+                    (double) nanos / Math.max(1, size),
+                    allocated < 0 ? "allocations unavailable" : String.format(Locale.US, "%.1f bytes/component", (double) allocated / Math.max(1, size)),
+                    blocked);
+        }
+    }
+
+    /**
+     * @return Bytes allocated by this thread, or -1 if the JVM does not report it.
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * One line per record: index, verdict and the path rules found, separated by tabs.
+     */
+    private static void writeVerdicts(List<Record> records, File file) throws IOException {
+        List<BlockRule> rules = new ArrayList<>();
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < records.size(); i++) {
+                Record record = records.get(i);
+                final boolean blocked = filter(record, new StringBuilder(record.path),
+                        record.buffer == null ? null : ByteBuffer.wrap(record.buffer));
+
+                StringBuilder line = new StringBuilder();
+                line.append(i).append('\t').append(blocked ? 1 : 0).append('\t');
+                if (record.source == LithoCapture.SOURCE_LITHO_FILTER) {
+                    rules.clear();
+                    LithoFilterPatch.findPathRules(record.path, rules);
+                    for (int j = 0; j < rules.size(); j++) {
+                        if (j > 0) line.append(',');
+                        line.append(rules.get(j).getName());
+                    }
+                }
+                writer.println(line);
+            }
+        }
+        System.out.println("Wrote verdicts to " + file);
+    }
+
+    private static void diff(File a, File b) throws IOException {
+        Map<Integer, String[]> left = readVerdicts(a);
+        Map<Integer, String[]> right = readVerdicts(b);
+
+        int changedVerdicts = 0;
+        Map<String, int[]> ruleChanges = new TreeMap<>();
+        for (Map.Entry<Integer, String[]> entry : left.entrySet()) {
+            String[] other = right.get(entry.getKey());
+            if (other == null) continue;
+
+            if (!entry.getValue()[1].equals(other[1])) {
+                if (changedVerdicts++ < MAX_LISTED_DIFFS) {
+                    System.out.printf(Locale.US, "record %d: %s -> %s%n", entry.getKey(), entry.getValue()[1], other[1]);
+                }
+            }
+
+            List<String> leftRules = rulesOf(entry.getValue());
+            List<String> rightRules = rulesOf(other);
+            for (String rule : leftRules) {
+                if (!rightRules.contains(rule)) ruleChanges.computeIfAbsent(rule, key -> new int[2])[0]++;
+            }
+            for (String rule : rightRules) {
+                if (!leftRules.contains(rule)) ruleChanges.computeIfAbsent(rule, key -> new int[2])[1]++;
+            }
+        }
+
+        System.out.printf(Locale.US, "%d of %d verdicts changed%n", changedVerdicts, left.size());
+        for (Map.Entry<String, int[]> entry : ruleChanges.entrySet()) {
+            System.out.printf(Locale.US, "%s: stopped matching %d, started matching %d%n",
+                    entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+        if (left.size() != right.size()) {
+            System.out.printf(Locale.US, "Record counts differ: %d and %d%n", left.size(), right.size());
+        }
+    }
+
+    private static Map<Integer, String[]> readVerdicts(File file) throws IOException {
+        Map<Integer, String[]> verdicts = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] fields = line.split("\t", -1);
+                verdicts.put(Integer.parseInt(fields[0]), fields);
+            }
+        }
+        return verdicts;
+    }
+
+    private static List<String> rulesOf(String[] fields) {
+        List<String> rules = new ArrayList<>();
+        if (fields.length < 3 || fields[2].isEmpty()) return rules;
+        for (String rule : fields[2].split(",")) rules.add(rule);
+        return rules;
+    }
+}
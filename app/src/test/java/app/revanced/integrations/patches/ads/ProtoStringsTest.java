@@ -0,0 +1,55 @@
+package app.revanced.integrations.patches.ads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class ProtoStringsTest {
+    @Test
+    public void textWithControlCharactersIsKept() {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        writeString(message, 1, "yt_outline_flag");
+        writeString(message, 2, "line one\nreport_flag");
+
+        ProtoStrings fields = new ProtoStrings();
+        fields.reset(ByteBuffer.wrap(message.toByteArray()));
+
+        assertTrue(fields.isValid());
+        assertEquals(2, fields.count());
+        assertEquals("line one\nreport_flag".length(), fields.length(1));
+    }
+
+    @Test
+    public void nestedMessageIsWalked() {
+        ByteArrayOutputStream nested = new ByteArrayOutputStream();
+        writeString(nested, 1, "yt_outline_share");
+        nested.write(2 << 3);
+        nested.write(24);
+
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        writeBytes(message, 1, nested.toByteArray());
+        writeString(message, 2, "title");
+
+        ProtoStrings fields = new ProtoStrings();
+        fields.reset(ByteBuffer.wrap(message.toByteArray()));
+
+        assertEquals(2, fields.count());
+        assertEquals("yt_outline_share".length(), fields.length(0));
+        assertEquals("title".length(), fields.length(1));
+    }
+
+    private static void writeString(ByteArrayOutputStream out, int field, String value) {
+        writeBytes(out, field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, int field, byte[] value) {
+        out.write(field << 3 | 2);
+        out.write(value.length);
+        out.write(value, 0, value.length);
+    }
+}